@@ -4,6 +4,7 @@ plugins {
 
 dependencies {
   implementation("com.diffplug.spotless:spotless-plugin-gradle:6.21.0")
+  implementation("me.champeau.jmh:jmh-gradle-plugin:0.7.2")
   implementation("net.kyori:indra-common:3.1.3")
   implementation("net.kyori:indra-git:3.1.3")
   implementation("net.kyori:indra-publishing-sonatype:3.1.3")
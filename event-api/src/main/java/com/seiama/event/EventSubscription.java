@@ -24,6 +24,7 @@
 package com.seiama.event;
 
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 
 /**
  * A subscription to an event.
@@ -57,6 +58,30 @@ public interface EventSubscription<E> {
    */
   EventSubscriber<? super E> subscriber();
 
+  /**
+   * Gets the owner.
+   *
+   * @return the owner, or {@code null} if this subscription has no owner
+   * @see com.seiama.event.registry.EventRegistry#subscribe(Object, Class, EventConfig, EventSubscriber)
+   * @since 1.0.0
+   */
+  default @Nullable Object owner() {
+    return null;
+  }
+
+  /**
+   * Gets the key.
+   *
+   * <p>A keyed subscription only receives events with the same key.</p>
+   *
+   * @return the key, or {@code null} if this subscription receives events regardless of their key
+   * @see com.seiama.event.registry.EventRegistry#subscribe(Class, Object, EventConfig, EventSubscriber)
+   * @since 1.0.0
+   */
+  default @Nullable Object key() {
+    return null;
+  }
+
   /**
    * Disposes this subscription.
    *
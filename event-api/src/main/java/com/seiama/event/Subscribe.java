@@ -0,0 +1,72 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Marks a method as an event subscriber.
+ *
+ * <p>An annotated method must not be static, must return {@code void}, and must have a single
+ * parameter: the event type. Annotated methods are registered with
+ * {@link com.seiama.event.registry.EventRegistry#subscribe(Object, MethodHandles.Lookup)}.</p>
+ *
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+  /**
+   * Gets the post order.
+   *
+   * @return the post order
+   * @see EventConfig#order()
+   * @since 1.0.0
+   */
+  int order() default EventConfig.DEFAULT_ORDER;
+
+  /**
+   * Gets if cancelled events are accepted.
+   *
+   * @return if cancelled events are accepted
+   * @see EventConfig#acceptsCancelled()
+   * @since 1.0.0
+   */
+  boolean acceptsCancelled() default EventConfig.DEFAULT_ACCEPTS_CANCELLED;
+
+  /**
+   * Gets if only the exact event type is accepted.
+   *
+   * @return if only the exact event type is accepted
+   * @see EventConfig#exact()
+   * @since 1.0.0
+   */
+  boolean exact() default EventConfig.DEFAULT_EXACT;
+}
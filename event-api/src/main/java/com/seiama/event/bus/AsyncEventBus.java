@@ -0,0 +1,480 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.registry.DispatchPlan;
+import com.seiama.event.registry.EventRegistry;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An implementation of an event bus that posts events asynchronously.
+ *
+ * <p>Each posted event is dispatched by a single task on the executor, so its subscribers are still
+ * called one after another in {@link EventConfig#order() order}. Separate events may be dispatched
+ * concurrently.</p>
+ *
+ * <p>Events waiting to be dispatched are unbounded by default. A bus constructed with a capacity holds them
+ * in a bounded queue instead, and applies its {@link OverflowPolicy overflow policy} when the queue is full.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+public class AsyncEventBus<E> extends SimpleEventBus<E> {
+  protected final Executor executor;
+  private final @Nullable BlockingQueue<Pending> queue;
+  private final OverflowPolicy overflow;
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * Constructs a new {@code AsyncEventBus} using the {@link #defaultExecutor() default executor}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @since 1.0.0
+   */
+  public AsyncEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions) {
+    this(registry, exceptions, defaultExecutor());
+  }
+
+  /**
+   * Constructs a new {@code AsyncEventBus}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param executor the executor events are dispatched on
+   * @since 1.0.0
+   */
+  public AsyncEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final Executor executor) {
+    super(registry, exceptions);
+    this.executor = requireNonNull(executor, "executor");
+    this.queue = null;
+    this.overflow = OverflowPolicy.BLOCK;
+  }
+
+  /**
+   * Constructs a new {@code AsyncEventBus} that holds at most {@code capacity} events waiting to be dispatched.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param executor the executor events are dispatched on
+   * @param capacity the maximum number of events waiting to be dispatched
+   * @param overflow what to do with an event posted while {@code capacity} events are waiting
+   * @throws IllegalArgumentException if {@code capacity} is not positive
+   * @since 1.0.0
+   */
+  public AsyncEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final Executor executor, final int capacity, final OverflowPolicy overflow) {
+    super(registry, exceptions);
+    this.executor = requireNonNull(executor, "executor");
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+    }
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.overflow = requireNonNull(overflow, "overflow");
+  }
+
+  /**
+   * Constructs a new {@code AsyncEventBus} that records dispatch statistics.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param executor the executor events are dispatched on
+   * @param metrics the metrics to record dispatch statistics to
+   * @since 1.0.0
+   */
+  public AsyncEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final Executor executor, final EventMetrics metrics) {
+    super(registry, exceptions, metrics);
+    this.executor = requireNonNull(executor, "executor");
+    this.queue = null;
+    this.overflow = OverflowPolicy.BLOCK;
+  }
+
+  /**
+   * Gets the default executor.
+   *
+   * <p>When running on Java 21 or newer this executor starts a new virtual thread for each event,
+   * otherwise it is the {@link ForkJoinPool#commonPool() common pool}.</p>
+   *
+   * @return the default executor
+   * @since 1.0.0
+   */
+  public static Executor defaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Gets the executor that {@code event} is dispatched on.
+   *
+   * <p>This is not used when events are held in a bounded queue, as they are taken from it in order by
+   * tasks on {@link #executor}.</p>
+   *
+   * @param event the event
+   * @return the executor
+   * @since 1.0.0
+   */
+  protected Executor executor(final E event) {
+    return this.executor;
+  }
+
+  /**
+   * Gets the number of events waiting to be dispatched, if they are held in a bounded queue.
+   *
+   * @return the number of events waiting to be dispatched, or {@code 0} if unbounded
+   * @since 1.0.0
+   */
+  public int queued() {
+    final @Nullable BlockingQueue<Pending> queue = this.queue;
+    return queue != null ? queue.size() : 0;
+  }
+
+  /**
+   * Gets the number of events that have been dropped or rejected because the queue was full.
+   *
+   * @return the number of dropped events
+   * @since 1.0.0
+   */
+  public long dropped() {
+    return this.dropped.sum();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>An exception thrown by the event exception handler is thrown from the task dispatching the event, and
+   * reaches the uncaught exception handler of the executor thread.</p>
+   *
+   * @param event the event
+   * @param order the order
+   * @throws RejectedExecutionException if the executor rejects the event, or if the queue is full and the
+   *     overflow policy is {@link OverflowPolicy#REJECT}
+   * @since 1.0.0
+   */
+  @Override
+  public void post(final E event, final OptionalInt order) {
+    requireNonNull(event, "event");
+    requireNonNull(order, "order");
+    this.submit(event, () -> super.post(event, order), null);
+  }
+
+  /**
+   * Posts an event if it can be dispatched without exceeding the capacity of the queue.
+   *
+   * <p>Unlike {@link #post(Object)}, this never blocks or drops another event, regardless of the overflow policy.</p>
+   *
+   * @param event the event
+   * @return {@code true} if the event was accepted, {@code false} if the queue is full
+   * @throws RejectedExecutionException if the executor rejects the event
+   * @since 1.0.0
+   */
+  public boolean tryPost(final E event) {
+    requireNonNull(event, "event");
+    final @Nullable BlockingQueue<Pending> queue = this.queue;
+    final CompletableFuture<E> future = new CompletableFuture<>();
+    final Pending pending = new Pending(() -> this.postNow(event, OptionalInt.empty(), future), future);
+    if (queue == null) {
+      this.executor(event).execute(pending.task);
+      return true;
+    }
+    if (!queue.offer(pending)) {
+      return false;
+    }
+    this.drain(queue, pending);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The event is dispatched by a task on the executor.</p>
+   *
+   * @param plan the dispatch plan
+   * @param event the event
+   * @param order the order
+   */
+  @Override
+  protected void post(final DispatchPlan<E> plan, final E event, final OptionalInt order) {
+    this.submit(event, () -> super.post(plan, event, order), null);
+  }
+
+  /**
+   * Posts an event to all registered subscribers.
+   *
+   * @param event the event
+   * @return a future completed with {@code event} once all subscribers have been called
+   * @since 1.0.0
+   */
+  public CompletableFuture<E> postAsync(final E event) {
+    return this.postAsync(event, OptionalInt.empty());
+  }
+
+  /**
+   * Posts an event to all registered subscribers at the order provided in {@code order}.
+   *
+   * <p>Exceptions thrown by subscribers are passed to the event exception handler, and do not complete
+   * the returned future exceptionally. It is only completed exceptionally if the executor rejects the
+   * event, if the event is dropped or rejected because the queue is full, or if the event exception
+   * handler throws.</p>
+   *
+   * @param event the event
+   * @param order the order
+   * @return a future completed with {@code event} once all subscribers have been called
+   * @since 1.0.0
+   */
+  public CompletableFuture<E> postAsync(final E event, final OptionalInt order) {
+    requireNonNull(event, "event");
+    requireNonNull(order, "order");
+    final CompletableFuture<E> future = new CompletableFuture<>();
+    try {
+      this.submit(event, () -> this.postNow(event, order, future), future);
+    } catch (final RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The events are dispatched together by a single task on the executor. When events are held in a bounded
+   * queue, each event is queued on its own instead, as if posted with {@link #post(Object)}. An exception thrown by
+   * the event exception handler reaches the uncaught exception handler of the executor thread.</p>
+   *
+   * @param events the events
+   * @throws RejectedExecutionException if the executor rejects the events, or if the queue is full and the
+   *     overflow policy is {@link OverflowPolicy#REJECT}
+   * @since 1.0.0
+   */
+  @Override
+  public void postAll(final Iterable<? extends E> events) {
+    if (this.queue != null) {
+      for (final E event : events) {
+        this.post(event, OptionalInt.empty());
+      }
+      return;
+    }
+    final List<E> batch = new ArrayList<>();
+    events.forEach(batch::add);
+    this.executor.execute(() -> super.postAll(batch));
+  }
+
+  /**
+   * Posts events to all registered subscribers.
+   *
+   * <p>The events are dispatched together by a single task on the executor, as described by
+   * {@link SimpleEventBus#postAll(Iterable)}. When events are held in a bounded queue, each event is
+   * queued on its own instead, as if posted with {@link #postAsync(Object)}.</p>
+   *
+   * @param events the events
+   * @return a future completed once all subscribers have been called with every event
+   * @since 1.0.0
+   */
+  public CompletableFuture<Void> postAllAsync(final Iterable<? extends E> events) {
+    if (this.queue != null) {
+      final List<CompletableFuture<E>> futures = new ArrayList<>();
+      for (final E event : events) {
+        futures.add(this.postAsync(event, OptionalInt.empty()));
+      }
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+    final List<E> batch = new ArrayList<>();
+    events.forEach(batch::add);
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(() -> {
+        try {
+          super.postAll(batch);
+          future.complete(null);
+        } catch (final Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (final RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  // dispatches the event on the executor, through the queue if it is bounded
+  private void submit(final E event, final Runnable task, final @Nullable CompletableFuture<?> future) {
+    final @Nullable BlockingQueue<Pending> queue = this.queue;
+    if (queue == null) {
+      this.executor(event).execute(task);
+      return;
+    }
+    final Pending pending = new Pending(task, future);
+    if (this.enqueue(queue, pending)) {
+      this.drain(queue, pending);
+    }
+  }
+
+  // returns whether a task needs to be submitted to take the event from the queue
+  private boolean enqueue(final BlockingQueue<Pending> queue, final Pending pending) {
+    switch (this.overflow) {
+      case BLOCK -> {
+        try {
+          queue.put(pending);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RejectedExecutionException("Interrupted while waiting for space in the event queue", e);
+        }
+        return true;
+      }
+      case DROP_NEWEST -> {
+        if (queue.offer(pending)) {
+          return true;
+        }
+        this.drop(pending);
+        return false;
+      }
+      case DROP_OLDEST -> {
+        boolean evicted = false;
+        while (!queue.offer(pending)) {
+          final @Nullable Pending oldest = queue.poll();
+          if (oldest != null) {
+            this.drop(oldest);
+            evicted = true;
+          }
+        }
+        // the task submitted for an evicted event takes this one instead
+        return !evicted;
+      }
+      case REJECT -> {
+        if (queue.offer(pending)) {
+          return true;
+        }
+        this.dropped.increment();
+        throw new RejectedExecutionException("Event queue is full");
+      }
+      default -> throw new IllegalStateException("Unknown overflow policy " + this.overflow);
+    }
+  }
+
+  private void drain(final BlockingQueue<Pending> queue, final Pending pending) {
+    try {
+      this.executor.execute(() -> {
+        final @Nullable Pending next = queue.poll();
+        if (next != null) {
+          next.task.run();
+        }
+      });
+    } catch (final RuntimeException e) {
+      // nothing will take the event from the queue
+      queue.remove(pending);
+      throw e;
+    }
+  }
+
+  private void drop(final Pending pending) {
+    this.dropped.increment();
+    if (pending.future != null) {
+      pending.future.completeExceptionally(new RejectedExecutionException("Event was dropped from a full event queue"));
+    }
+  }
+
+  private void postNow(final E event, final OptionalInt order, final CompletableFuture<? super E> future) {
+    try {
+      super.post(event, order);
+      future.complete(event);
+    } catch (final Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
+  /**
+   * What to do with an event posted while the queue of an event bus is full.
+   *
+   * @since 1.0.0
+   */
+  public enum OverflowPolicy {
+    /**
+     * Blocks the posting thread until there is space in the queue.
+     *
+     * @since 1.0.0
+     */
+    BLOCK,
+    /**
+     * Drops the posted event.
+     *
+     * @since 1.0.0
+     */
+    DROP_NEWEST,
+    /**
+     * Drops the event that has been waiting the longest, to make space for the posted event.
+     *
+     * @since 1.0.0
+     */
+    DROP_OLDEST,
+    /**
+     * Rejects the posted event, throwing a {@link RejectedExecutionException} from {@link AsyncEventBus#post(Object)},
+     * or completing the future returned by {@link AsyncEventBus#postAsync(Object)} exceptionally.
+     *
+     * @since 1.0.0
+     */
+    REJECT;
+  }
+
+  private record Pending(Runnable task, @Nullable CompletableFuture<?> future) {
+  }
+
+  private static final class DefaultExecutor {
+    static final Executor INSTANCE = create();
+
+    private DefaultExecutor() {
+    }
+
+    private static Executor create() {
+      try {
+        final MethodHandle factory = MethodHandles.publicLookup().findStatic(
+          Executors.class,
+          "newVirtualThreadPerTaskExecutor",
+          MethodType.methodType(ExecutorService.class)
+        );
+        return (Executor) factory.invoke();
+      } catch (final Throwable t) {
+        // virtual threads are not available (before Java 21), or are a preview feature that is not enabled
+        return ForkJoinPool.commonPool();
+      }
+    }
+  }
+}
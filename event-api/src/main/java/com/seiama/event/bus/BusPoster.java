@@ -0,0 +1,58 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import java.util.OptionalInt;
+import org.jspecify.annotations.NullMarked;
+
+import static java.util.Objects.requireNonNull;
+
+@NullMarked
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+final class BusPoster<T> implements Poster<T> {
+  private final EventBus<? super T> bus;
+  private final Class<T> type;
+
+  BusPoster(final EventBus<? super T> bus, final Class<T> type) {
+    this.bus = bus;
+    this.type = requireNonNull(type, "type");
+  }
+
+  @Override
+  public Class<T> type() {
+    return this.type;
+  }
+
+  @Override
+  public void post(final T event, final OptionalInt order) {
+    check(this.type, event);
+    this.bus.post(event, order);
+  }
+
+  static void check(final Class<?> type, final Object event) {
+    if (event.getClass() != type) {
+      throw new IllegalArgumentException("Expected an event of exactly " + type + ", but got " + event.getClass());
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An event bus that coalesces events with the same key before posting them to another event bus.
+ *
+ * <p>Event types are {@link #coalesce(Class, Function, BinaryOperator) registered} with a function extracting a key
+ * from each event. A posted event of exactly a registered type is held until the next {@link #flush() flush}, and
+ * merged with, or replaces, any event with the same key that is already held. Flushing posts the surviving events to
+ * the other bus as a batch, in the order their keys were first posted since the previous flush.</p>
+ *
+ * <p>A bus constructed with a window flushes that long after an event is first held, so no event is held for longer
+ * than the window. Otherwise, events are only posted when flushed explicitly or when the bus is {@link #close() closed}.
+ * Once closed, events are no longer held, and are posted to the other bus immediately.</p>
+ *
+ * <p>Events of other types, events for which the key function returns {@code null}, and events posted with an order
+ * are posted to the other bus immediately, and so may overtake held events.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+public class CoalescingEventBus<E> implements EventBus<E>, AutoCloseable {
+  private final EventBus<E> delegate;
+  private final @Nullable ScheduledExecutorService scheduler;
+  private final long window;
+  // copy-on-write: the published map is never modified, only replaced
+  private volatile Map<Class<?>, Coalescer<?>> coalescers = Map.of();
+  private final Object lock = new Object();
+  // held while draining and posting, so that batches are posted in the order they were drained
+  private final Object flushLock = new Object();
+  private Map<Key, Object> held = new LinkedHashMap<>();
+  private @Nullable ScheduledFuture<?> scheduled;
+  private boolean closed;
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Constructs a new {@code CoalescingEventBus} that only posts held events when flushed.
+   *
+   * @param delegate the event bus events are posted to
+   * @since 1.0.0
+   */
+  public CoalescingEventBus(final EventBus<E> delegate) {
+    this.delegate = requireNonNull(delegate, "delegate");
+    this.scheduler = null;
+    this.window = 0;
+  }
+
+  /**
+   * Constructs a new {@code CoalescingEventBus} that posts held events at most {@code window} after they are first held.
+   *
+   * @param delegate the event bus events are posted to
+   * @param window how long to hold events for
+   * @param scheduler the scheduler used to flush held events
+   * @throws IllegalArgumentException if {@code window} is not positive
+   * @since 1.0.0
+   */
+  public CoalescingEventBus(final EventBus<E> delegate, final Duration window, final ScheduledExecutorService scheduler) {
+    this.delegate = requireNonNull(delegate, "delegate");
+    if (window.isNegative() || window.isZero()) {
+      throw new IllegalArgumentException("window must be positive, was " + window);
+    }
+    this.window = window.toNanos();
+    this.scheduler = requireNonNull(scheduler, "scheduler");
+  }
+
+  /**
+   * Registers {@code event} to be coalesced, where a held event is replaced by a later event with the same key.
+   *
+   * @param event the event type
+   * @param key the key function
+   * @param <T> the event type
+   * @throws IllegalArgumentException if {@code event} has already been registered
+   * @since 1.0.0
+   */
+  public <T extends E> void coalesce(final Class<T> event, final Function<? super T, ? extends @Nullable Object> key) {
+    this.coalesce(event, key, (held, posted) -> posted);
+  }
+
+  /**
+   * Registers {@code event} to be coalesced, where a held event is merged with a later event with the same key.
+   *
+   * @param event the event type
+   * @param key the key function
+   * @param merge the function merging the held event with a later event
+   * @param <T> the event type
+   * @throws IllegalArgumentException if {@code event} has already been registered
+   * @since 1.0.0
+   */
+  public synchronized <T extends E> void coalesce(final Class<T> event, final Function<? super T, ? extends @Nullable Object> key, final BinaryOperator<T> merge) {
+    requireNonNull(event, "event");
+    final Map<Class<?>, Coalescer<?>> coalescers = new HashMap<>(this.coalescers);
+    if (coalescers.putIfAbsent(event, new Coalescer<>(event, requireNonNull(key, "key"), requireNonNull(merge, "merge"))) != null) {
+      throw new IllegalArgumentException(event + " is already coalesced");
+    }
+    this.coalescers = coalescers;
+  }
+
+  /**
+   * Gets the number of events currently held.
+   *
+   * @return the number of held events
+   * @since 1.0.0
+   */
+  public int held() {
+    synchronized (this.lock) {
+      return this.held.size();
+    }
+  }
+
+  /**
+   * Gets the number of events that have been merged into, or have replaced, a held event.
+   *
+   * @return the number of coalesced events
+   * @since 1.0.0
+   */
+  public long coalesced() {
+    return this.coalesced.sum();
+  }
+
+  @Override
+  public void post(final E event, final OptionalInt order) {
+    requireNonNull(event, "event");
+    final @Nullable Coalescer<?> coalescer = order.isPresent() ? null : this.coalescers.get(event.getClass());
+    final @Nullable Object key = coalescer != null ? coalescer.key(event) : null;
+    if (coalescer == null || key == null || !this.hold(coalescer, key, event)) {
+      this.delegate.post(event, order);
+    }
+  }
+
+  // returns false if this bus has been closed, and the event must be posted immediately
+  private boolean hold(final Coalescer<?> coalescer, final Object key, final E event) {
+    synchronized (this.lock) {
+      if (this.closed) {
+        return false;
+      }
+      this.held.merge(new Key(event.getClass(), key), event, (held, posted) -> {
+        this.coalesced.increment();
+        return coalescer.merge(held, posted);
+      });
+      if (this.scheduler != null && this.scheduled == null) {
+        this.scheduled = this.scheduler.schedule(this::flush, this.window, TimeUnit.NANOSECONDS);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Posts all held events to the other event bus.
+   *
+   * @since 1.0.0
+   */
+  @SuppressWarnings("unchecked")
+  public void flush() {
+    synchronized (this.flushLock) {
+      final List<E> events;
+      synchronized (this.lock) {
+        if (this.scheduled != null) {
+          this.scheduled.cancel(false);
+          this.scheduled = null;
+        }
+        if (this.held.isEmpty()) {
+          return;
+        }
+        events = new ArrayList<>((Collection<? extends E>) this.held.values());
+        this.held = new LinkedHashMap<>();
+      }
+      this.delegate.postAll(events);
+    }
+  }
+
+  /**
+   * Posts all held events to the other event bus, and stops holding events.
+   *
+   * <p>A pending scheduled flush is cancelled. Events posted after closing are posted to the other bus immediately,
+   * and may overtake the held events that closing posts.</p>
+   *
+   * @since 1.0.0
+   */
+  @Override
+  public void close() {
+    synchronized (this.lock) {
+      this.closed = true;
+    }
+    this.flush();
+  }
+
+  private record Key(Class<?> type, Object key) {
+  }
+
+  private record Coalescer<T>(Class<T> type, Function<? super T, ? extends @Nullable Object> key, BinaryOperator<T> merge) {
+    @Nullable Object key(final Object event) {
+      return this.key.apply(this.type.cast(event));
+    }
+
+    Object merge(final Object held, final Object posted) {
+      return requireNonNull(this.merge.apply(this.type.cast(held), this.type.cast(posted)), "merge returned null");
+    }
+  }
+}
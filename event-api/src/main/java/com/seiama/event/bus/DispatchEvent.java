@@ -0,0 +1,80 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+// recorded around each subscriber invocation, see SimpleEventBus#dispatch - only use if FlightRecorder.AVAILABLE
+@Category({"Seiama", "Event"})
+@Description("An event dispatched to a single subscriber")
+@Label("Event Dispatch")
+@Name("com.seiama.event.Dispatch")
+@NullMarked
+@StackTrace(false)
+@Threshold("1 ms")
+final class DispatchEvent extends jdk.jfr.Event {
+  private static final EventType TYPE = EventType.getEventType(DispatchEvent.class);
+
+  @Label("Event Type")
+  @Nullable Class<?> eventType;
+
+  @Label("Subscriber")
+  @Nullable Class<?> subscriber;
+
+  @Label("Order")
+  int order;
+
+  @Description("Whether the subscriber threw an exception")
+  @Label("Failed")
+  boolean failed;
+
+  // begins recording a dispatch, or returns null without allocating if dispatches are not being recorded
+  static @Nullable DispatchEvent start() {
+    if (!TYPE.isEnabled()) {
+      return null;
+    }
+    final DispatchEvent recording = new DispatchEvent();
+    recording.begin();
+    return recording;
+  }
+
+  void finish(final Class<?> eventType, final Class<?> subscriber, final int order, final boolean failed) {
+    this.end();
+    if (this.shouldCommit()) {
+      this.eventType = eventType;
+      this.subscriber = subscriber;
+      this.order = order;
+      this.failed = failed;
+      this.commit();
+    }
+  }
+}
@@ -25,6 +25,7 @@ package com.seiama.event.bus;
 
 import com.seiama.event.EventSubscription;
 import java.util.OptionalInt;
+import java.util.function.Supplier;
 import org.jspecify.annotations.NullMarked;
 
 /**
@@ -55,6 +56,49 @@ public interface EventBus<E> {
   @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
   void post(final E event, final OptionalInt order);
 
+  /**
+   * Posts an event of exactly type {@code event}, constructed by {@code supplier}, to all registered subscribers.
+   *
+   * <p>Implementations may skip calling {@code supplier} if no subscriber can accept the event, so that
+   * events that are expensive to construct are only constructed when they are needed.</p>
+   *
+   * @param event the event type
+   * @param supplier the event supplier
+   * @param <T> the event type
+   * @throws IllegalArgumentException if the class of the supplied event is not exactly {@code event}
+   * @since 1.0.0
+   */
+  default <T extends E> void post(final Class<T> event, final Supplier<? extends T> supplier) {
+    this.poster(event).post(supplier);
+  }
+
+  /**
+   * Posts events to all registered subscribers.
+   *
+   * <p>Implementations may dispatch a batch differently than posting each event on its own, as long as
+   * the subscribers of each event are called in order.</p>
+   *
+   * @param events the events
+   * @since 1.0.0
+   */
+  default void postAll(final Iterable<? extends E> events) {
+    for (final E event : events) {
+      this.post(event);
+    }
+  }
+
+  /**
+   * Gets a poster for events of exactly type {@code event}.
+   *
+   * @param event the event type
+   * @param <T> the event type
+   * @return a poster
+   * @since 1.0.0
+   */
+  default <T extends E> Poster<T> poster(final Class<T> event) {
+    return new BusPoster<>(this, event);
+  }
+
   /**
    * An event exception handler.
    *
@@ -0,0 +1,278 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventSubscription;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Dispatch statistics collected by an event bus.
+ *
+ * <p>Counters are striped, so that posting threads do not contend on them. Statistics are kept until
+ * {@link #reset()} is called, or until their event type or subscription is no longer referenced - statistics do not
+ * keep a {@link EventSubscription#dispose() disposed} subscription, or an unloaded event type, from being
+ * collected.</p>
+ *
+ * @see SimpleEventBus#SimpleEventBus(com.seiama.event.registry.EventRegistry, EventBus.EventExceptionHandler, EventMetrics)
+ * @since 1.0.0
+ */
+@NullMarked
+public final class EventMetrics {
+  private final WeakIdentityMap<Class<?>, EventCounters> events = new WeakIdentityMap<>();
+  private final WeakIdentityMap<EventSubscription<?>, SubscriptionCounters> subscriptions = new WeakIdentityMap<>();
+
+  /**
+   * Constructs a new {@code EventMetrics}.
+   *
+   * @since 1.0.0
+   */
+  public EventMetrics() {
+  }
+
+  /**
+   * Takes a snapshot of the statistics collected so far.
+   *
+   * @return a snapshot
+   * @since 1.0.0
+   */
+  public Snapshot snapshot() {
+    final Map<Class<?>, EventStats> events = new HashMap<>();
+    this.events.forEach((type, counters) -> events.put(type, counters.snapshot()));
+    final Map<EventSubscription<?>, SubscriptionStats> subscriptions = new HashMap<>();
+    this.subscriptions.forEach((subscription, counters) -> subscriptions.put(subscription, counters.snapshot()));
+    return new Snapshot(Map.copyOf(events), Map.copyOf(subscriptions));
+  }
+
+  /**
+   * Discards all statistics collected so far.
+   *
+   * @since 1.0.0
+   */
+  public void reset() {
+    this.events.clear();
+    this.subscriptions.clear();
+  }
+
+  void posted(final Class<?> event, final boolean cancelled) {
+    final EventCounters counters = this.counters(event);
+    counters.posts.increment();
+    if (cancelled) {
+      counters.cancellations.increment();
+    }
+  }
+
+  void invoked(final EventSubscription<?> subscription, final long nanos, final boolean failed) {
+    @Nullable SubscriptionCounters counters = this.subscriptions.get(subscription);
+    if (counters == null) {
+      counters = this.subscriptions.computeIfAbsent(subscription, key -> new SubscriptionCounters());
+    }
+    counters.invocations.increment();
+    if (failed) {
+      counters.failures.increment();
+    }
+    counters.nanos.add(nanos);
+    counters.histogram[SubscriptionStats.bucket(nanos)].increment();
+  }
+
+  private EventCounters counters(final Class<?> event) {
+    final @Nullable EventCounters counters = this.events.get(event);
+    if (counters != null) {
+      return counters;
+    }
+    return this.events.computeIfAbsent(event, key -> new EventCounters());
+  }
+
+  private static final class EventCounters {
+    final LongAdder posts = new LongAdder();
+    final LongAdder cancellations = new LongAdder();
+
+    EventStats snapshot() {
+      return new EventStats(this.posts.sum(), this.cancellations.sum());
+    }
+  }
+
+  private static final class SubscriptionCounters {
+    final LongAdder invocations = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder[] histogram = new LongAdder[SubscriptionStats.BUCKETS];
+
+    SubscriptionCounters() {
+      for (int i = 0; i < this.histogram.length; i++) {
+        this.histogram[i] = new LongAdder();
+      }
+    }
+
+    SubscriptionStats snapshot() {
+      final long[] histogram = new long[this.histogram.length];
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] = this.histogram[i].sum();
+      }
+      return new SubscriptionStats(this.invocations.sum(), this.failures.sum(), this.nanos.sum(), histogram);
+    }
+  }
+
+  /**
+   * A snapshot of dispatch statistics.
+   *
+   * @param events statistics for each posted event type
+   * @param subscriptions statistics for each invoked subscription
+   * @since 1.0.0
+   */
+  public record Snapshot(
+    Map<Class<?>, EventStats> events,
+    Map<EventSubscription<?>, SubscriptionStats> subscriptions
+  ) {
+  }
+
+  /**
+   * Statistics for an event type.
+   *
+   * @param posts the number of times an event of this type has been posted
+   * @param cancellations the number of posts after which the event was cancelled
+   * @since 1.0.0
+   */
+  public record EventStats(
+    long posts,
+    long cancellations
+  ) {
+  }
+
+  /**
+   * Statistics for a subscription.
+   *
+   * <p>Latencies are recorded in a histogram with power-of-two buckets: bucket {@code 0} counts invocations
+   * that took no measurable time, and bucket {@code i} counts invocations that took at least
+   * {@code 2^(i - 1)} and less than {@code 2^i} nanoseconds.</p>
+   *
+   * @since 1.0.0
+   */
+  public static final class SubscriptionStats {
+    static final int BUCKETS = Long.SIZE;
+
+    private final long invocations;
+    private final long failures;
+    private final long nanos;
+    private final long[] histogram;
+
+    SubscriptionStats(final long invocations, final long failures, final long nanos, final long[] histogram) {
+      this.invocations = invocations;
+      this.failures = failures;
+      this.nanos = nanos;
+      this.histogram = histogram;
+    }
+
+    static int bucket(final long nanos) {
+      return BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+    }
+
+    /**
+     * Gets the number of invocations.
+     *
+     * @return the number of invocations
+     * @since 1.0.0
+     */
+    public long invocations() {
+      return this.invocations;
+    }
+
+    /**
+     * Gets the number of invocations that threw an exception.
+     *
+     * @return the number of failed invocations
+     * @since 1.0.0
+     */
+    public long failures() {
+      return this.failures;
+    }
+
+    /**
+     * Gets the total time spent in invocations, in nanoseconds.
+     *
+     * @return the total time spent in invocations
+     * @since 1.0.0
+     */
+    public long totalNanos() {
+      return this.nanos;
+    }
+
+    /**
+     * Gets the mean time spent in an invocation, in nanoseconds.
+     *
+     * @return the mean time spent in an invocation, or {@code 0} if there were no invocations
+     * @since 1.0.0
+     */
+    public double meanNanos() {
+      return this.invocations == 0 ? 0 : (double) this.nanos / this.invocations;
+    }
+
+    /**
+     * Gets an upper bound for the given percentile of invocation latencies, in nanoseconds.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 1}
+     * @return the upper bound of the histogram bucket containing the percentile
+     * @since 1.0.0
+     */
+    public long percentileNanos(final double percentile) {
+      if (percentile < 0 || percentile > 1) {
+        throw new IllegalArgumentException("percentile must be between 0 and 1, was " + percentile);
+      }
+      final long total = this.invocations;
+      final long rank = (long) Math.ceil(percentile * total);
+      long seen = 0;
+      for (int i = 0; i < this.histogram.length; i++) {
+        seen += this.histogram[i];
+        if (seen >= rank && seen > 0) {
+          return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Gets the latency histogram.
+     *
+     * @return a copy of the histogram buckets
+     * @since 1.0.0
+     */
+    public long[] histogram() {
+      return this.histogram.clone();
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", this.getClass().getSimpleName() + "[", "]")
+        .add("invocations=" + this.invocations)
+        .add("failures=" + this.failures)
+        .add("meanNanos=" + this.meanNanos())
+        .add("p99Nanos=" + this.percentileNanos(0.99))
+        .toString();
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.AbstractCancellable;
+import com.seiama.event.Cancellable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A pool of reusable instances of a mutable event type.
+ *
+ * <p>A producer {@link #acquire() acquires} an instance, fills it in and posts it to a bus that the pool has been
+ * {@link SimpleEventBus#pool(EventPool) registered} with. Once the event has been dispatched, the bus
+ * {@link #release(Object) releases} it back to the pool, so it must not be used after it has been posted - including
+ * through the future returned by {@link AsyncEventBus#postAsync(Object)}. An instance posted more than once in a
+ * {@link EventBus#postAll(Iterable) batch} is only released once.</p>
+ *
+ * <p>Released instances have their {@link Cancellable cancelled} state cleared, as for {@link AbstractCancellable},
+ * and are then passed to the reset function. Instances are held in stripes shared by all threads - each thread
+ * prefers its own stripe, but takes from and releases to the others when it is empty or full, so events may be released
+ * on a different thread than they were acquired on. Instances released while every stripe is full are left to the
+ * garbage collector.</p>
+ *
+ * <p>In debug mode, the pool keeps track of released instances, and posting or releasing an instance that has already
+ * been released throws an {@link IllegalStateException}. This adds synchronization to every operation, and is meant for
+ * finding use-after-release bugs in tests.</p>
+ *
+ * @param <T> the event type
+ * @since 1.0.0
+ */
+@NullMarked
+public final class EventPool<T> {
+  private static final int STRIPE_CAPACITY = 32;
+
+  private final Class<T> type;
+  private final Supplier<? extends T> factory;
+  private final Consumer<? super T> reset;
+  private final Stripe[] stripes;
+  private final int mask;
+  private final @Nullable Set<Object> released;
+
+  /**
+   * Constructs a new {@code EventPool}.
+   *
+   * @param type the event type
+   * @param factory the factory used to create instances when the pool is empty
+   * @since 1.0.0
+   */
+  public EventPool(final Class<T> type, final Supplier<? extends T> factory) {
+    this(type, factory, event -> { }, false);
+  }
+
+  /**
+   * Constructs a new {@code EventPool}.
+   *
+   * @param type the event type
+   * @param factory the factory used to create instances when the pool is empty
+   * @param reset the function used to reset the state of released instances
+   * @param debug whether to detect use of released instances
+   * @since 1.0.0
+   */
+  public EventPool(final Class<T> type, final Supplier<? extends T> factory, final Consumer<? super T> reset, final boolean debug) {
+    this.type = requireNonNull(type, "type");
+    this.factory = requireNonNull(factory, "factory");
+    this.reset = requireNonNull(reset, "reset");
+    final int stripes = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1)) << 1;
+    this.stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe();
+    }
+    this.mask = stripes - 1;
+    this.released = debug ? Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>())) : null;
+  }
+
+  /**
+   * Gets the event type.
+   *
+   * <p>Only events of exactly this class are released to the pool by a bus.</p>
+   *
+   * @return the event type
+   * @since 1.0.0
+   */
+  public Class<T> type() {
+    return this.type;
+  }
+
+  /**
+   * Acquires an instance, which is a released instance if one is available or a new instance otherwise.
+   *
+   * @return an instance
+   * @since 1.0.0
+   */
+  public T acquire() {
+    final int home = probe();
+    for (int i = 0; i <= this.mask; i++) {
+      final Stripe stripe = this.stripes[(home + i) & this.mask];
+      if (stripe.size > 0) {
+        @SuppressWarnings("unchecked")
+        final @Nullable T event = (T) stripe.pop();
+        if (event != null) {
+          if (this.released != null) {
+            this.released.remove(event);
+          }
+          return event;
+        }
+      }
+    }
+    return requireNonNull(this.factory.get(), "factory returned null");
+  }
+
+  /**
+   * Releases an instance back to the pool.
+   *
+   * <p>This is done by a bus after dispatching a pooled event, and only needs to be called for instances that
+   * are acquired but not posted.</p>
+   *
+   * @param event the instance
+   * @throws IllegalStateException if in debug mode, and {@code event} has already been released
+   * @since 1.0.0
+   */
+  public void release(final T event) {
+    requireNonNull(event, "event");
+    if (this.released != null && !this.released.add(event)) {
+      throw new IllegalStateException(event + " has already been released");
+    }
+    if (event instanceof Cancellable) {
+      ((Cancellable) event).cancelled(false);
+    }
+    this.reset.accept(event);
+    final int home = probe();
+    for (int i = 0; i <= this.mask; i++) {
+      final Stripe stripe = this.stripes[(home + i) & this.mask];
+      if (stripe.size < STRIPE_CAPACITY && stripe.push(event)) {
+        return;
+      }
+    }
+    // every stripe is full - leave the instance to the garbage collector
+    if (this.released != null) {
+      this.released.remove(event);
+    }
+  }
+
+  // called by a bus before dispatching a pooled event
+  void verify(final Object event) {
+    if (this.released != null && this.released.contains(event)) {
+      throw new IllegalStateException(event + " was posted after it was released");
+    }
+  }
+
+  // called by a bus after dispatching a pooled event
+  void recycle(final Object event) {
+    this.release(this.type.cast(event));
+  }
+
+  // called by a bus after dispatching a batch of pooled events, which may post the same instance more than once
+  void recycleAll(final List<?> events) {
+    if (events.size() == 1) {
+      this.recycle(events.get(0));
+      return;
+    }
+    final Set<Object> recycled = Collections.newSetFromMap(new IdentityHashMap<>(events.size()));
+    for (final Object event : events) {
+      if (recycled.add(event)) {
+        this.recycle(event);
+      }
+    }
+  }
+
+  // threads start at different stripes, to spread contention
+  private static int probe() {
+    final int hash = System.identityHashCode(Thread.currentThread());
+    return hash ^ (hash >>> 16);
+  }
+
+  private static final class Stripe {
+    private final @Nullable Object[] items = new Object[STRIPE_CAPACITY];
+    // written while holding the lock, and read without it to skip empty and full stripes
+    volatile int size;
+
+    synchronized @Nullable Object pop() {
+      final int size = this.size;
+      if (size == 0) {
+        return null;
+      }
+      final @Nullable Object item = this.items[size - 1];
+      this.items[size - 1] = null;
+      this.size = size - 1;
+      return item;
+    }
+
+    synchronized boolean push(final Object item) {
+      final int size = this.size;
+      if (size == STRIPE_CAPACITY) {
+        return false;
+      }
+      this.items[size] = item;
+      this.size = size + 1;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventSubscription;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A policy that quarantines misbehaving subscriptions of an event bus.
+ *
+ * <p>Invocations of each subscription are counted in windows of a fixed number of invocations. An invocation
+ * is bad if the subscriber throws, or takes at least the latency threshold to return. When the share of bad
+ * invocations in a window reaches the failure rate, the subscription is {@link State#QUARANTINED quarantined}:
+ * events are not dispatched to it until the cooldown has passed. The next event it would receive is then
+ * dispatched to it as a {@link State#PROBATION probation} - if that invocation is good the subscription is
+ * {@link State#HEALTHY healthy} again, otherwise it is quarantined for another cooldown.</p>
+ *
+ * <p>State changes are reported to the listener on the thread that caused them, and must not throw. The state of
+ * each invoked subscription is kept until {@link #reset()} is called, or until the subscription is no longer
+ * referenced once it has been {@link EventSubscription#dispose() disposed} - the state of a subscription does not keep
+ * it from being collected.</p>
+ *
+ * @see SimpleEventBus#quarantine(EventQuarantine)
+ * @since 1.0.0
+ */
+@NullMarked
+public final class EventQuarantine {
+  private static final Listener IGNORE = (subscription, state) -> { };
+
+  private final double failureRate;
+  private final long latency;
+  private final int window;
+  private final long cooldown;
+  private final Listener listener;
+  private final WeakIdentityMap<EventSubscription<?>, Tracker> trackers = new WeakIdentityMap<>();
+
+  /**
+   * Constructs a new {@code EventQuarantine}.
+   *
+   * @param failureRate the share of bad invocations in a window that quarantines a subscription, in {@code (0, 1]}
+   * @param latency the time after which an invocation is bad even if it does not throw
+   * @param window the number of invocations in a window
+   * @param cooldown how long a subscription is quarantined for
+   * @throws IllegalArgumentException if any argument is out of range
+   * @since 1.0.0
+   */
+  public EventQuarantine(final double failureRate, final Duration latency, final int window, final Duration cooldown) {
+    this(failureRate, latency, window, cooldown, IGNORE);
+  }
+
+  /**
+   * Constructs a new {@code EventQuarantine} that reports state changes to {@code listener}.
+   *
+   * @param failureRate the share of bad invocations in a window that quarantines a subscription, in {@code (0, 1]}
+   * @param latency the time after which an invocation is bad even if it does not throw
+   * @param window the number of invocations in a window
+   * @param cooldown how long a subscription is quarantined for
+   * @param listener the listener state changes are reported to
+   * @throws IllegalArgumentException if any argument is out of range
+   * @since 1.0.0
+   */
+  public EventQuarantine(final double failureRate, final Duration latency, final int window, final Duration cooldown, final Listener listener) {
+    if (!(failureRate > 0 && failureRate <= 1)) {
+      throw new IllegalArgumentException("failureRate must be in (0, 1], was " + failureRate);
+    }
+    if (latency.isNegative() || latency.isZero()) {
+      throw new IllegalArgumentException("latency must be positive, was " + latency);
+    }
+    if (window < 1) {
+      throw new IllegalArgumentException("window must be positive, was " + window);
+    }
+    if (cooldown.isNegative()) {
+      throw new IllegalArgumentException("cooldown must not be negative, was " + cooldown);
+    }
+    this.failureRate = failureRate;
+    this.latency = latency.toNanos();
+    this.window = window;
+    this.cooldown = cooldown.toNanos();
+    this.listener = requireNonNull(listener, "listener");
+  }
+
+  /**
+   * Gets the state of {@code subscription}.
+   *
+   * @param subscription the subscription
+   * @return the state
+   * @since 1.0.0
+   */
+  public State state(final EventSubscription<?> subscription) {
+    final @Nullable Tracker tracker = this.trackers.get(subscription);
+    return tracker != null ? tracker.state.get() : State.HEALTHY;
+  }
+
+  /**
+   * Discards the state of every subscription, making them all healthy.
+   *
+   * <p>State changes caused by discarding are not reported.</p>
+   *
+   * @since 1.0.0
+   */
+  public void reset() {
+    this.trackers.clear();
+  }
+
+  // determines whether an event may be dispatched to a subscription, starting its probation once the cooldown has passed
+  boolean admits(final EventSubscription<?> subscription) {
+    final @Nullable Tracker tracker = this.trackers.get(subscription);
+    if (tracker == null) {
+      return true;
+    }
+    return switch (tracker.state.get()) {
+      case HEALTHY -> true;
+      case QUARANTINED -> System.nanoTime() - tracker.until >= 0 && this.transition(subscription, tracker, State.QUARANTINED, State.PROBATION);
+      // only the invocation that started the probation is admitted
+      case PROBATION -> false;
+    };
+  }
+
+  void invoked(final EventSubscription<?> subscription, final long nanos, final boolean failed) {
+    @Nullable Tracker tracker = this.trackers.get(subscription);
+    if (tracker == null) {
+      tracker = this.trackers.computeIfAbsent(subscription, key -> new Tracker());
+    }
+    final boolean bad = failed || nanos >= this.latency;
+    switch (tracker.state.get()) {
+      case HEALTHY -> {
+        // invocations in the low half, bad invocations in the high half
+        final long counts = tracker.counts.addAndGet(bad ? (1L << 32) | 1 : 1);
+        if ((int) counts == this.window) {
+          // later invocations may have been counted already, so only this window is removed
+          tracker.counts.addAndGet(-counts);
+          if ((counts >>> 32) >= this.failureRate * this.window) {
+            this.quarantine(subscription, tracker, State.HEALTHY);
+          }
+        }
+      }
+      case PROBATION -> {
+        if (bad) {
+          this.quarantine(subscription, tracker, State.PROBATION);
+        } else {
+          this.transition(subscription, tracker, State.PROBATION, State.HEALTHY);
+        }
+      }
+      // invocations admitted before the subscription was quarantined
+      case QUARANTINED -> {
+      }
+    }
+  }
+
+  private void quarantine(final EventSubscription<?> subscription, final Tracker tracker, final State from) {
+    // only read while quarantined, so it is set before the state is published
+    tracker.until = System.nanoTime() + this.cooldown;
+    this.transition(subscription, tracker, from, State.QUARANTINED);
+  }
+
+  private boolean transition(final EventSubscription<?> subscription, final Tracker tracker, final State from, final State to) {
+    if (!tracker.state.compareAndSet(from, to)) {
+      return false;
+    }
+    if (to == State.HEALTHY) {
+      tracker.counts.set(0);
+    }
+    this.listener.stateChanged(subscription, to);
+    return true;
+  }
+
+  private static final class Tracker {
+    final AtomicReference<State> state = new AtomicReference<>(State.HEALTHY);
+    final AtomicLong counts = new AtomicLong();
+    volatile long until;
+  }
+
+  /**
+   * The state of a subscription.
+   *
+   * @since 1.0.0
+   */
+  public enum State {
+    /**
+     * Events are dispatched to the subscription.
+     *
+     * @since 1.0.0
+     */
+    HEALTHY,
+    /**
+     * Events are not dispatched to the subscription until its cooldown has passed.
+     *
+     * @since 1.0.0
+     */
+    QUARANTINED,
+    /**
+     * A single event has been dispatched to the subscription to determine whether it is healthy again.
+     *
+     * @since 1.0.0
+     */
+    PROBATION;
+  }
+
+  /**
+   * A listener for state changes of subscriptions.
+   *
+   * @since 1.0.0
+   */
+  @FunctionalInterface
+  public interface Listener {
+    /**
+     * Called when the state of {@code subscription} changes.
+     *
+     * @param subscription the subscription
+     * @param state the new state
+     * @since 1.0.0
+     */
+    void stateChanged(final EventSubscription<?> subscription, final State state);
+  }
+}
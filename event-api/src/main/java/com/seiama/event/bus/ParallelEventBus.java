@@ -0,0 +1,147 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.registry.DispatchPlan;
+import com.seiama.event.registry.EventRegistry;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.jspecify.annotations.NullMarked;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An implementation of an event bus that calls the subscribers of an order group in parallel.
+ *
+ * <p>Subscribers with the same {@link EventConfig#order() order} are called concurrently on a {@link ForkJoinPool},
+ * and all of them complete before the subscribers of the next order are called. Subscribers within a group see the
+ * {@link com.seiama.event.Cancellable cancelled} state of the event as it was when the group started, so cancelling
+ * an event only affects later groups. Posting blocks until every group has completed.</p>
+ *
+ * <p>Failures of all subscribers are passed to the event exception handler, which may be called from several threads
+ * at once. Subscribers in the same group must not depend on each other, and must be safe to call concurrently with the
+ * same event.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+public class ParallelEventBus<E> extends SimpleEventBus<E> {
+  protected final ForkJoinPool pool;
+
+  /**
+   * Constructs a new {@code ParallelEventBus} using the {@link ForkJoinPool#commonPool() common pool}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @since 1.0.0
+   */
+  public ParallelEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions) {
+    this(registry, exceptions, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new {@code ParallelEventBus}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param pool the pool subscribers are called on
+   * @since 1.0.0
+   */
+  public ParallelEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final ForkJoinPool pool) {
+    super(registry, exceptions);
+    this.pool = requireNonNull(pool, "pool");
+  }
+
+  /**
+   * Posts events to all registered subscribers.
+   *
+   * <p>Each event is posted as if it were {@link #post(Object) posted} on its own, so the subscribers of an order
+   * group are called in parallel for every event, and each event has reached every subscriber before the next event
+   * is posted.</p>
+   *
+   * @param events the events
+   * @since 1.0.0
+   */
+  @Override
+  public void postAll(final Iterable<? extends E> events) {
+    for (final E event : events) {
+      this.post(event, OptionalInt.empty());
+    }
+  }
+
+  @Override
+  protected void dispatch(final DispatchPlan<E> plan, final E event, final OptionalInt order, final int start, final int end) {
+    int from = start;
+    while (from < end) {
+      final int to = Math.min(plan.end(plan.order(from)), end);
+      final boolean cancelled = this.currentlyCancelled(event);
+      if (to - from == 1) {
+        if (!(cancelled && plan.skipsCancelled(from))) {
+          this.invoke(plan.subscription(from), event, order);
+        }
+      } else {
+        // returns once every subscriber in the group has been called
+        this.pool.invoke(new Group(plan, event, order, from, to, cancelled));
+      }
+      from = to;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private final class Group extends RecursiveAction {
+    private final DispatchPlan<E> plan;
+    private final E event;
+    private final OptionalInt order;
+    private final int from;
+    private final int to;
+    private final boolean cancelled;
+
+    Group(final DispatchPlan<E> plan, final E event, final OptionalInt order, final int from, final int to, final boolean cancelled) {
+      this.plan = plan;
+      this.event = event;
+      this.order = order;
+      this.from = from;
+      this.to = to;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from == 1) {
+        if (!(this.cancelled && this.plan.skipsCancelled(this.from))) {
+          ParallelEventBus.this.invoke(this.plan.subscription(this.from), this.event, this.order);
+        }
+        return;
+      }
+      final int middle = (this.from + this.to) >>> 1;
+      invokeAll(
+        new Group(this.plan, this.event, this.order, this.from, middle, this.cancelled),
+        new Group(this.plan, this.event, this.order, middle, this.to, this.cancelled)
+      );
+    }
+  }
+}
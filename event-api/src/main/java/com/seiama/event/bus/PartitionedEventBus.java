@@ -0,0 +1,250 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.registry.EventRegistry;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An implementation of an event bus that posts events asynchronously, in order for each key.
+ *
+ * <p>A {@link #key(Class, Function) key} is extracted from each posted event, and events are hashed by their key to one of
+ * a fixed number of lanes. Each lane dispatches its events one at a time, in the order they were posted, while separate
+ * lanes run in parallel on the executor - so events with the same key are never reordered or dispatched concurrently.
+ * Subscribers of each event are called in {@link EventConfig#order() order}.</p>
+ *
+ * <p>Events without a key extractor, or for which the extractor returns {@code null}, are not ordered, and are dispatched
+ * directly on the executor as with {@link AsyncEventBus}.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+public class PartitionedEventBus<E> extends AsyncEventBus<E> {
+  private final Lane[] lanes;
+  // copy-on-write: replaced when an extractor is registered
+  private volatile Keys keys = new Keys(Map.of());
+
+  /**
+   * Constructs a new {@code PartitionedEventBus} using the {@link #defaultExecutor() default executor}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param lanes the number of lanes
+   * @since 1.0.0
+   */
+  public PartitionedEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final int lanes) {
+    this(registry, exceptions, defaultExecutor(), lanes);
+  }
+
+  /**
+   * Constructs a new {@code PartitionedEventBus}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param executor the executor lanes run on
+   * @param lanes the number of lanes
+   * @throws IllegalArgumentException if {@code lanes} is not positive
+   * @since 1.0.0
+   */
+  public PartitionedEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final Executor executor, final int lanes) {
+    super(registry, exceptions, executor);
+    if (lanes < 1) {
+      throw new IllegalArgumentException("lanes must be positive, was " + lanes);
+    }
+    this.lanes = new Lane[lanes];
+    for (int i = 0; i < lanes; i++) {
+      this.lanes[i] = new Lane(executor);
+    }
+  }
+
+  /**
+   * Registers the function used to extract keys from events of type {@code event}, including its subtypes.
+   *
+   * <p>When an event is a subtype of several registered types, the extractor of its closest registered
+   * superclass is used.</p>
+   *
+   * @param event the event type
+   * @param key the key extractor
+   * @param <T> the event type
+   * @throws IllegalArgumentException if a key extractor has already been registered for {@code event}
+   * @since 1.0.0
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T extends E> void key(final Class<T> event, final Function<? super T, ? extends @Nullable Object> key) {
+    requireNonNull(event, "event");
+    requireNonNull(key, "key");
+    final Map<Class<?>, Function<Object, ?>> extractors = new HashMap<>(this.keys.extractors);
+    if (extractors.putIfAbsent(event, (Function<Object, ?>) key) != null) {
+      throw new IllegalArgumentException("A key extractor has already been registered for " + event);
+    }
+    this.keys = new Keys(extractors);
+  }
+
+  @Override
+  protected Executor executor(final E event) {
+    final @Nullable Object key = this.keys.resolve(event.getClass()).apply(event);
+    if (key == null) {
+      return this.executor;
+    }
+    final int hash = key.hashCode();
+    return this.lanes[Math.floorMod(hash ^ (hash >>> 16), this.lanes.length)];
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each event is dispatched on its own lane, so a batch is not dispatched as a whole.</p>
+   *
+   * @param events the events
+   * @since 1.0.0
+   */
+  @Override
+  public void postAll(final Iterable<? extends E> events) {
+    for (final E event : events) {
+      this.post(event, OptionalInt.empty());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each event is dispatched on its own lane, so a batch is not dispatched as a whole.</p>
+   *
+   * @param events the events
+   * @return a future completed once all subscribers have been called with every event
+   * @since 1.0.0
+   */
+  @Override
+  public CompletableFuture<Void> postAllAsync(final Iterable<? extends E> events) {
+    final List<CompletableFuture<E>> futures = new ArrayList<>();
+    for (final E event : events) {
+      futures.add(this.postAsync(event, OptionalInt.empty()));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+  }
+
+  private static final class Keys {
+    private static final Function<Object, ?> NONE = event -> null;
+    private final Map<Class<?>, Function<Object, ?>> extractors;
+    // the extractor resolved for each posted event class, including subclasses of registered types - referenced weakly,
+    // as an extractor may reach this bus (JDK-8136353), and is held strongly by the extractors above instead
+    private final ClassValue<WeakReference<Function<Object, ?>>> resolved = new ClassValue<>() {
+      @Override
+      protected WeakReference<Function<Object, ?>> computeValue(final Class<?> type) {
+        return new WeakReference<>(Keys.this.find(type));
+      }
+    };
+
+    Keys(final Map<Class<?>, Function<Object, ?>> extractors) {
+      this.extractors = extractors;
+    }
+
+    Function<Object, ?> resolve(final Class<?> type) {
+      final @Nullable Function<Object, ?> resolved = this.resolved.get(type).get();
+      return resolved != null ? resolved : this.find(type);
+    }
+
+    private Function<Object, ?> find(final Class<?> type) {
+      for (@Nullable Class<?> current = type; current != null; current = current.getSuperclass()) {
+        final @Nullable Function<Object, ?> key = this.extractors.get(current);
+        if (key != null) {
+          return key;
+        }
+      }
+      // registered interfaces
+      for (final Map.Entry<Class<?>, Function<Object, ?>> entry : this.extractors.entrySet()) {
+        if (entry.getKey().isAssignableFrom(type)) {
+          return entry.getValue();
+        }
+      }
+      return NONE;
+    }
+  }
+
+  // runs tasks one at a time, in the order they were submitted
+  private static final class Lane implements Executor, Runnable {
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    Lane(final Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+      this.tasks.add(task);
+      try {
+        this.schedule();
+      } catch (final RuntimeException e) {
+        this.tasks.remove(task);
+        throw e;
+      }
+    }
+
+    private void schedule() {
+      if (this.scheduled.compareAndSet(false, true)) {
+        try {
+          this.executor.execute(this);
+        } catch (final RuntimeException e) {
+          this.scheduled.set(false);
+          throw e;
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        @Nullable Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+          task.run();
+        }
+      } finally {
+        this.scheduled.set(false);
+        // a task may have been added after polling, but before it could see that we were still scheduled
+        if (!this.tasks.isEmpty()) {
+          this.schedule();
+        }
+      }
+    }
+  }
+}
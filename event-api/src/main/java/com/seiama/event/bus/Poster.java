@@ -0,0 +1,85 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import java.util.OptionalInt;
+import java.util.function.Supplier;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Posts events of one exact type to an event bus.
+ *
+ * <p>A poster may keep what it needs to dispatch its type between posts, making it cheaper than
+ * {@link EventBus#post(Object)} at call sites that post a single type.</p>
+ *
+ * @param <T> the event type
+ * @see EventBus#poster(Class)
+ * @since 1.0.0
+ */
+@NullMarked
+public interface Poster<T> {
+  /**
+   * Gets the event type.
+   *
+   * @return the event type
+   * @since 1.0.0
+   */
+  Class<T> type();
+
+  /**
+   * Posts an event to all registered subscribers.
+   *
+   * @param event the event
+   * @throws IllegalArgumentException if the class of {@code event} is not exactly {@link #type()}
+   * @since 1.0.0
+   */
+  default void post(final T event) {
+    this.post(event, OptionalInt.empty());
+  }
+
+  /**
+   * Posts an event to all registered subscribers at the order provided in {@code order}.
+   *
+   * @param event the event
+   * @param order the order
+   * @throws IllegalArgumentException if the class of {@code event} is not exactly {@link #type()}
+   * @since 1.0.0
+   */
+  @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+  void post(final T event, final OptionalInt order);
+
+  /**
+   * Posts an event constructed by {@code supplier} to all registered subscribers.
+   *
+   * <p>Implementations may skip calling {@code supplier} if no subscriber can accept the event, so that
+   * events that are expensive to construct are only constructed when they are needed.</p>
+   *
+   * @param supplier the event supplier
+   * @throws IllegalArgumentException if the class of the supplied event is not exactly {@link #type()}
+   * @since 1.0.0
+   */
+  default void post(final Supplier<? extends T> supplier) {
+    this.post(supplier.get());
+  }
+}
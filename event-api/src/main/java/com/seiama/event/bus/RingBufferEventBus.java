@@ -0,0 +1,454 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.registry.DispatchPlan;
+import com.seiama.event.registry.EventRegistry;
+import java.lang.invoke.VarHandle;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An implementation of an event bus that hands events to a consumer thread through a preallocated ring buffer.
+ *
+ * <p>Posting claims the next slot of the buffer, stores the event in it and publishes it - no queue nodes are
+ * allocated and no locks are taken, unless the {@link WaitStrategy#BLOCKING blocking} wait strategy is used.
+ * The consumer thread calls the subscribers of each event in turn, in {@link EventConfig#order() order}, and
+ * events are dispatched in the order that they were published. When the buffer is full, posting waits until
+ * the consumer frees a slot, which means that a subscriber posting to a full buffer deadlocks.</p>
+ *
+ * <p>The consumer thread is started when the bus is constructed, and runs until the bus is {@link #close() closed}.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+public final class RingBufferEventBus<E> extends SimpleEventBus<E> implements AutoCloseable {
+  private final int mask;
+  private final @Nullable Object[] events;
+  private final @Nullable OptionalInt[] orders;
+  private final Sequencer sequencer;
+  private final WaitStrategy waitStrategy;
+  private final Object monitor = new Object();
+  // set while the consumer blocks on the monitor, so that producers only take it to wake the consumer
+  private volatile boolean waiting;
+  // the last sequence the consumer has dispatched - producers may not wrap past it
+  private final AtomicLong consumed = new AtomicLong(-1);
+  private final Thread consumer;
+  private volatile boolean closed;
+
+  /**
+   * Constructs a new {@code RingBufferEventBus} that accepts events from any thread and blocks its consumer
+   * while there are no events.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param capacity the number of slots in the ring buffer, which must be a power of two
+   * @since 1.0.0
+   */
+  public RingBufferEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final int capacity) {
+    this(registry, exceptions, capacity, ProducerType.MULTI, WaitStrategy.BLOCKING, DefaultThreadFactory.INSTANCE);
+  }
+
+  /**
+   * Constructs a new {@code RingBufferEventBus}.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param capacity the number of slots in the ring buffer, which must be a power of two
+   * @param producers the threads that may post events
+   * @param waitStrategy how the consumer waits for events
+   * @param threadFactory the factory used to create the consumer thread
+   * @throws IllegalArgumentException if {@code capacity} is not a positive power of two
+   * @since 1.0.0
+   */
+  public RingBufferEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final int capacity, final ProducerType producers, final WaitStrategy waitStrategy, final ThreadFactory threadFactory) {
+    super(registry, exceptions);
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a positive power of two, was " + capacity);
+    }
+    requireNonNull(producers, "producers");
+    this.waitStrategy = requireNonNull(waitStrategy, "waitStrategy");
+    requireNonNull(threadFactory, "threadFactory");
+    this.mask = capacity - 1;
+    this.events = new Object[capacity];
+    this.orders = new OptionalInt[capacity];
+    this.sequencer = producers == ProducerType.SINGLE ? new SingleProducerSequencer(this, capacity) : new MultiProducerSequencer(this, capacity);
+    this.consumer = threadFactory.newThread(this::consume);
+    this.consumer.start();
+  }
+
+  /**
+   * Publishes an event to the ring buffer, to be posted to all registered subscribers at the order
+   * provided in {@code order}.
+   *
+   * <p>Waits for a free slot if the ring buffer is full.</p>
+   *
+   * @param event the event
+   * @param order the order
+   * @throws IllegalStateException if this bus has been closed
+   * @since 1.0.0
+   */
+  @Override
+  public void post(final E event, final OptionalInt order) {
+    requireNonNull(event, "event");
+    requireNonNull(order, "order");
+    this.checkOpen();
+    final long sequence = this.sequencer.next();
+    final int index = (int) sequence & this.mask;
+    this.events[index] = event;
+    this.orders[index] = order;
+    this.sequencer.publish(sequence);
+    this.waitStrategy.signal(this);
+  }
+
+  /**
+   * Publishes events to the ring buffer, to be posted to all registered subscribers.
+   *
+   * <p>Each event is published as if it were {@link #post(Object) posted} on its own, so the consumer dispatches
+   * them in order, and events posted concurrently from other threads may be interleaved with them. Waits for a free
+   * slot whenever the ring buffer is full.</p>
+   *
+   * @param events the events
+   * @throws IllegalStateException if this bus has been closed
+   * @since 1.0.0
+   */
+  @Override
+  public void postAll(final Iterable<? extends E> events) {
+    this.checkOpen();
+    for (final E event : events) {
+      this.post(event, OptionalInt.empty());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The event is published to the ring buffer, and the consumer looks up its own plan.</p>
+   *
+   * @param plan the dispatch plan
+   * @param event the event
+   * @param order the order
+   */
+  @Override
+  protected void post(final DispatchPlan<E> plan, final E event, final OptionalInt order) {
+    this.post(event, order);
+  }
+
+  /**
+   * Stops accepting events, and waits for the consumer to dispatch every event that has already been published.
+   *
+   * <p>Events posted concurrently with closing may not be dispatched. If the calling thread is interrupted,
+   * this returns without waiting for the consumer, and the interrupt status is kept.</p>
+   *
+   * @since 1.0.0
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    WaitStrategy.BLOCKING.signal(this);
+    if (Thread.currentThread() != this.consumer) {
+      try {
+        this.consumer.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void checkOpen() {
+    if (this.closed) {
+      throw new IllegalStateException("Event bus has been closed");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void consume() {
+    long next = 0;
+    while (true) {
+      final long available = this.await(next);
+      if (available < next) {
+        return; // closed, and drained
+      }
+      for (; next <= available; next++) {
+        final int index = (int) next & this.mask;
+        final E event = (E) this.events[index];
+        final OptionalInt order = this.orders[index];
+        this.events[index] = null;
+        this.orders[index] = null;
+        try {
+          super.post(event, order);
+        } catch (final Throwable t) {
+          // only thrown by the event exception handler - the consumer must survive it
+          final Thread thread = Thread.currentThread();
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+      }
+      this.consumed.lazySet(available);
+    }
+  }
+
+  // returns the highest published sequence, which is below sequence only once closed and drained
+  private long await(final long sequence) {
+    while (true) {
+      // read before the cursor, so that events published before closing are seen
+      final boolean closed = this.closed;
+      final long claimed = this.sequencer.claimed();
+      final long available = this.sequencer.highestPublished(sequence, claimed);
+      if (available >= sequence || (closed && claimed < sequence)) {
+        return available;
+      }
+      this.waitStrategy.idle(this, sequence);
+    }
+  }
+
+  /**
+   * The threads that may post to a ring buffer.
+   *
+   * @since 1.0.0
+   */
+  public enum ProducerType {
+    /**
+     * Events are only posted from a single thread at a time, which allows claiming slots without atomic operations.
+     *
+     * @since 1.0.0
+     */
+    SINGLE,
+    /**
+     * Events may be posted from any thread.
+     *
+     * @since 1.0.0
+     */
+    MULTI;
+  }
+
+  /**
+   * How the consumer of a ring buffer waits for events to be published.
+   *
+   * @since 1.0.0
+   */
+  public enum WaitStrategy {
+    /**
+     * Spins on the consumer thread, giving the lowest latency at the cost of a fully used core.
+     *
+     * @since 1.0.0
+     */
+    BUSY_SPIN {
+      @Override
+      void idle(final RingBufferEventBus<?> bus, final long sequence) {
+        Thread.onSpinWait();
+      }
+    },
+    /**
+     * Yields the consumer thread between checks, keeping latency low while letting other threads run.
+     *
+     * @since 1.0.0
+     */
+    YIELDING {
+      @Override
+      void idle(final RingBufferEventBus<?> bus, final long sequence) {
+        Thread.yield();
+      }
+    },
+    /**
+     * Blocks the consumer thread until an event is published, which frees the CPU at the cost of latency and
+     * of producers taking a lock whenever they wake the consumer.
+     *
+     * @since 1.0.0
+     */
+    BLOCKING {
+      @Override
+      void idle(final RingBufferEventBus<?> bus, final long sequence) {
+        synchronized (bus.monitor) {
+          // set before checking, so that a producer publishing after the check sees it
+          bus.waiting = true;
+          try {
+            if (bus.sequencer.claimed() < sequence && !bus.closed) {
+              bus.monitor.wait();
+            }
+          } catch (final InterruptedException e) {
+            // the consumer only stops once closed
+          } finally {
+            bus.waiting = false;
+          }
+        }
+      }
+
+      @Override
+      void signal(final RingBufferEventBus<?> bus) {
+        // orders the publish before reading the flag, as a single producer only publishes with a release store
+        VarHandle.fullFence();
+        if (bus.waiting) {
+          synchronized (bus.monitor) {
+            bus.monitor.notifyAll();
+          }
+        }
+      }
+    };
+
+    abstract void idle(final RingBufferEventBus<?> bus, final long sequence);
+
+    void signal(final RingBufferEventBus<?> bus) {
+    }
+  }
+
+  private abstract static class Sequencer {
+    final RingBufferEventBus<?> bus;
+    final int capacity;
+
+    Sequencer(final RingBufferEventBus<?> bus, final int capacity) {
+      this.bus = bus;
+      this.capacity = capacity;
+    }
+
+    // claims the next sequence, waiting until the consumer has freed its slot
+    abstract long next();
+
+    abstract void publish(final long sequence);
+
+    // the highest claimed sequence, which may not have been published yet
+    abstract long claimed();
+
+    // the highest sequence from lower up to available that has been published, with no gaps
+    abstract long highestPublished(final long lower, final long available);
+
+    final long awaitCapacity(final long wrap) {
+      long consumed;
+      while (wrap > (consumed = this.bus.consumed.get())) {
+        this.bus.checkOpen();
+        LockSupport.parkNanos(1L);
+      }
+      return consumed;
+    }
+  }
+
+  private static final class SingleProducerSequencer extends Sequencer {
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // only accessed by the producer
+    private long next = -1;
+    private long consumed = -1;
+
+    SingleProducerSequencer(final RingBufferEventBus<?> bus, final int capacity) {
+      super(bus, capacity);
+    }
+
+    @Override
+    long next() {
+      final long next = this.next + 1;
+      final long wrap = next - this.capacity;
+      if (wrap > this.consumed) {
+        this.consumed = this.awaitCapacity(wrap);
+      }
+      this.next = next;
+      return next;
+    }
+
+    @Override
+    void publish(final long sequence) {
+      this.cursor.lazySet(sequence);
+    }
+
+    @Override
+    long claimed() {
+      return this.cursor.get();
+    }
+
+    @Override
+    long highestPublished(final long lower, final long available) {
+      return available;
+    }
+  }
+
+  private static final class MultiProducerSequencer extends Sequencer {
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    // the lap of the sequence last published in each slot
+    private final AtomicIntegerArray published;
+    private final int shift;
+
+    MultiProducerSequencer(final RingBufferEventBus<?> bus, final int capacity) {
+      super(bus, capacity);
+      this.published = new AtomicIntegerArray(capacity);
+      for (int i = 0; i < capacity; i++) {
+        this.published.set(i, -1);
+      }
+      this.shift = Integer.numberOfTrailingZeros(capacity);
+    }
+
+    @Override
+    long next() {
+      while (true) {
+        final long current = this.cursor.get();
+        final long next = current + 1;
+        final long wrap = next - this.capacity;
+        final long consumed = this.consumed.get();
+        if (wrap > consumed) {
+          this.consumed.set(this.awaitCapacity(wrap));
+        } else if (this.cursor.compareAndSet(current, next)) {
+          return next;
+        }
+      }
+    }
+
+    @Override
+    void publish(final long sequence) {
+      this.published.lazySet((int) sequence & (this.capacity - 1), (int) (sequence >>> this.shift));
+    }
+
+    @Override
+    long claimed() {
+      return this.cursor.get();
+    }
+
+    @Override
+    long highestPublished(final long lower, final long available) {
+      for (long sequence = lower; sequence <= available; sequence++) {
+        if (this.published.get((int) sequence & (this.capacity - 1)) != (int) (sequence >>> this.shift)) {
+          return sequence - 1;
+        }
+      }
+      return available;
+    }
+  }
+
+  private static final class DefaultThreadFactory {
+    static final ThreadFactory INSTANCE = runnable -> {
+      final Thread thread = new Thread(runnable, "event-ring-buffer");
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    private DefaultThreadFactory() {
+    }
+  }
+}
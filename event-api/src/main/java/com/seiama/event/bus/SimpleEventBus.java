@@ -26,24 +26,56 @@ package com.seiama.event.bus;
 import com.seiama.event.Cancellable;
 import com.seiama.event.EventConfig;
 import com.seiama.event.EventSubscription;
+import com.seiama.event.registry.DispatchPlan;
 import com.seiama.event.registry.EventRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
+import java.util.function.Supplier;
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * A simple implementation of an event bus.
  *
+ * <p>Posts and subscriber invocations are recorded as {@code com.seiama.event.Post} and
+ * {@code com.seiama.event.Dispatch} events when Java Flight Recorder is recording them. Both default to a
+ * threshold of 1 ms. Events posted together by {@link #postAll(Iterable)} are recorded as a single post of each
+ * run of events of the same class. The {@code jdk.jfr} module is optional, and nothing is recorded without it.</p>
+ *
  * @param <E> the base event type
  * @since 1.0.0
  */
 @NullMarked
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 public class SimpleEventBus<E> implements EventBus<E> {
+  // whether a bus class overrides accepts, which is only called if it does
+  private static final ClassValue<Boolean> FILTERED = new ClassValue<>() {
+    @Override
+    protected Boolean computeValue(final Class<?> type) {
+      for (Class<?> current = type; current != SimpleEventBus.class; current = current.getSuperclass()) {
+        try {
+          current.getDeclaredMethod("accepts", EventSubscription.class, Object.class, OptionalInt.class);
+          return true;
+        } catch (final NoSuchMethodException e) {
+          // not declared by this class
+        }
+      }
+      return false;
+    }
+  };
+
   protected final EventRegistry<E> registry;
   protected final EventExceptionHandler exceptions;
+  protected final @Nullable EventMetrics metrics;
+  // copy-on-write: the published map is never modified, only replaced
+  private volatile Map<Class<?>, EventPool<?>> pools = Map.of();
+  private volatile @Nullable EventQuarantine quarantine;
+  private final boolean filtered = FILTERED.get(this.getClass());
 
   /**
    * Constructs a new {@code SimpleEventBus}.
@@ -55,27 +87,316 @@ public class SimpleEventBus<E> implements EventBus<E> {
   public SimpleEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions) {
     this.registry = requireNonNull(registry, "registry");
     this.exceptions = requireNonNull(exceptions, "exceptions");
+    this.metrics = null;
+  }
+
+  /**
+   * Constructs a new {@code SimpleEventBus} that records dispatch statistics.
+   *
+   * @param registry the event registry
+   * @param exceptions the event exception handler
+   * @param metrics the metrics to record dispatch statistics to
+   * @since 1.0.0
+   */
+  public SimpleEventBus(final EventRegistry<E> registry, final EventBus.EventExceptionHandler exceptions, final EventMetrics metrics) {
+    this.registry = requireNonNull(registry, "registry");
+    this.exceptions = requireNonNull(exceptions, "exceptions");
+    this.metrics = requireNonNull(metrics, "metrics");
+  }
+
+  /**
+   * Registers a pool that events of its type are released to after they have been dispatched.
+   *
+   * @param pool the event pool
+   * @throws IllegalArgumentException if a pool has already been registered for the same type
+   * @since 1.0.0
+   */
+  public synchronized void pool(final EventPool<? extends E> pool) {
+    requireNonNull(pool, "pool");
+    final Map<Class<?>, EventPool<?>> pools = new HashMap<>(this.pools);
+    if (pools.putIfAbsent(pool.type(), pool) != null) {
+      throw new IllegalArgumentException("A pool has already been registered for " + pool.type());
+    }
+    this.pools = pools;
+  }
+
+  /**
+   * Sets the policy used to quarantine misbehaving subscriptions.
+   *
+   * <p>Quarantined subscriptions are skipped when dispatching, as if they were not part of the dispatch plan.</p>
+   *
+   * @param quarantine the quarantine policy
+   * @throws IllegalStateException if a quarantine policy has already been set
+   * @since 1.0.0
+   */
+  public synchronized void quarantine(final EventQuarantine quarantine) {
+    requireNonNull(quarantine, "quarantine");
+    if (this.quarantine != null) {
+      throw new IllegalStateException("A quarantine policy has already been set");
+    }
+    this.quarantine = quarantine;
   }
 
   @Override
   public void post(final E event, final OptionalInt order) {
     @SuppressWarnings("unchecked")
     final Class<? extends E> type = (Class<? extends E>) event.getClass();
-    final List<EventSubscription<? super E>> subscriptions = this.registry.subscriptions(type);
-    if (subscriptions.isEmpty()) {
+    this.postNow(this.registry.plan(type), event, order);
+  }
+
+  /**
+   * Returns a poster that keeps the dispatch plan of {@code event} for as long as the
+   * {@link EventRegistry#version() version} of the registry is unchanged.
+   *
+   * @param event the event type
+   * @param <T> the event type
+   * @return a poster
+   * @since 1.0.0
+   */
+  @Override
+  public <T extends E> Poster<T> poster(final Class<T> event) {
+    return new PlannedPoster<>(event);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The supplier is only called if the dispatch plan of {@code event} has subscriptions. Once the plan has been
+   * baked, looking it up does not take a lock, so this costs a single lookup while {@code event} has no subscribers.
+   * Call sites that post a single type can keep a {@link #poster(Class) poster} instead, which only reads the
+   * {@link EventRegistry#version() version} of the registry.</p>
+   *
+   * @param event the event type
+   * @param supplier the event supplier
+   * @param <T> the event type
+   * @since 1.0.0
+   */
+  @Override
+  public <T extends E> void post(final Class<T> event, final Supplier<? extends T> supplier) {
+    final DispatchPlan<E> plan = this.registry.plan(event);
+    if (plan.isEmpty()) {
       return;
     }
-    for (final EventSubscription<? super E> subscription : subscriptions) {
-      if (this.accepts(subscription, event, order)) {
-        try {
-          subscription.subscriber().on(event);
-        } catch (final Throwable t) {
-          this.exceptions.eventExceptionCaught(this, subscription, event, t);
+    final T instance = supplier.get();
+    BusPoster.check(event, instance);
+    this.post(plan, instance, OptionalInt.empty());
+  }
+
+  /**
+   * Posts an event to the subscribers in {@code plan}, at the order provided in {@code order}.
+   *
+   * <p>This is called by the posters of this bus with a plan for the exact type of {@code event}.</p>
+   *
+   * @param plan the dispatch plan
+   * @param event the event
+   * @param order the order
+   */
+  protected void post(final DispatchPlan<E> plan, final E event, final OptionalInt order) {
+    this.postNow(plan, event, order);
+  }
+
+  private void postNow(final DispatchPlan<E> keyed, final E event, final OptionalInt order) {
+    final Class<? extends E> type = keyed.event();
+    final @Nullable EventPool<?> pool = this.pools.get(type);
+    if (pool != null) {
+      pool.verify(event);
+    }
+    final @Nullable PostEvent recording = FlightRecorder.AVAILABLE ? PostEvent.start() : null;
+    int subscribers = 0;
+    final DispatchPlan<E> plan = keyed.select(event);
+    if (!plan.isEmpty()) {
+      if (order.isPresent()) {
+        final int target = order.getAsInt();
+        final int start = plan.start(target);
+        final int end = plan.end(target);
+        subscribers = end - start;
+        this.dispatch(plan, event, order, start, end);
+      } else {
+        subscribers = plan.size();
+        this.dispatch(plan, event, order, 0, subscribers);
+      }
+    }
+    if (recording != null) {
+      recording.finish(type, 1, subscribers, this.currentlyCancelled(event) ? 1 : 0);
+    }
+    final @Nullable EventMetrics metrics = this.metrics;
+    if (metrics != null) {
+      metrics.posted(type, this.currentlyCancelled(event));
+    }
+    if (pool != null) {
+      pool.recycle(event);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Adjacent events of the same class are dispatched together, looking up their subscriptions once.
+   * Each subscriber is called with every event of such a run before the next subscriber is called, so a
+   * subscriber may see a later event before an earlier event has reached every subscriber. Events with
+   * {@link EventRegistry#subscribe(Class, Object, com.seiama.event.EventConfig, com.seiama.event.EventSubscriber) keyed subscribers}
+   * are dispatched one at a time instead.</p>
+   *
+   * @param events the events
+   * @since 1.0.0
+   */
+  @Override
+  public void postAll(final Iterable<? extends E> events) {
+    final List<E> run = new ArrayList<>();
+    @Nullable Class<?> type = null;
+    for (final E event : events) {
+      if (event.getClass() != type) {
+        this.dispatchAll(run);
+        run.clear();
+        type = event.getClass();
+      }
+      run.add(event);
+    }
+    this.dispatchAll(run);
+  }
+
+  private void dispatchAll(final List<E> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    final Class<? extends E> type = (Class<? extends E>) events.get(0).getClass();
+    final @Nullable EventPool<?> pool = this.pools.get(type);
+    if (pool != null) {
+      events.forEach(pool::verify);
+    }
+    final @Nullable PostEvent recording = FlightRecorder.AVAILABLE ? PostEvent.start() : null;
+    final DispatchPlan<E> plan = this.registry.plan(type);
+    final @Nullable EventMetrics metrics = this.metrics;
+    int subscribers = 0;
+    if (plan.isKeyed()) {
+      for (final E event : events) {
+        final DispatchPlan<E> selected = plan.select(event);
+        subscribers += selected.size();
+        this.dispatch(selected, event, OptionalInt.empty(), 0, selected.size());
+      }
+    } else {
+      final int size = plan.size();
+      subscribers = size * events.size();
+      for (int i = 0; i < size; i++) {
+        final EventSubscription<? super E> subscription = plan.subscription(i);
+        final boolean skipsCancelled = plan.skipsCancelled(i);
+        for (final E event : events) {
+          if (skipsCancelled && this.currentlyCancelled(event)) {
+            continue;
+          }
+          this.invoke(metrics, subscription, event, OptionalInt.empty());
         }
       }
     }
+    if (recording != null || metrics != null) {
+      int cancelled = 0;
+      for (final E event : events) {
+        final boolean eventCancelled = this.currentlyCancelled(event);
+        if (eventCancelled) {
+          cancelled++;
+        }
+        if (metrics != null) {
+          metrics.posted(type, eventCancelled);
+        }
+      }
+      if (recording != null) {
+        recording.finish(type, events.size(), subscribers, cancelled);
+      }
+    }
+    if (pool != null) {
+      pool.recycleAll(events);
+    }
   }
 
+  /**
+   * Dispatches {@code event} to the subscriptions of {@code plan} between {@code start}, inclusive, and {@code end}, exclusive.
+   *
+   * @param plan the dispatch plan
+   * @param event the event
+   * @param order the order the event was posted at, if any
+   * @param start the index of the first subscription
+   * @param end the index after the last subscription
+   */
+  protected void dispatch(final DispatchPlan<E> plan, final E event, final OptionalInt order, final int start, final int end) {
+    final @Nullable EventMetrics metrics = this.metrics;
+    for (int i = start; i < end; i++) {
+      if (plan.skipsCancelled(i) && this.currentlyCancelled(event)) {
+        continue;
+      }
+      this.invoke(metrics, plan.subscription(i), event, order);
+    }
+  }
+
+  /**
+   * Calls the subscriber of {@code subscription} with {@code event}, passing anything it throws to the event exception handler.
+   *
+   * <p>The subscriber is not called if this bus overrides {@link #accepts(EventSubscription, Object, OptionalInt)}
+   * and it does not accept the event.</p>
+   *
+   * @param subscription the event subscription
+   * @param event the event
+   * @param order the order the event was posted at, if any
+   */
+  protected final void invoke(final EventSubscription<? super E> subscription, final E event, final OptionalInt order) {
+    this.invoke(this.metrics, subscription, event, order);
+  }
+
+  private void invoke(final @Nullable EventMetrics metrics, final EventSubscription<? super E> subscription, final E event, final OptionalInt order) {
+    if (this.filtered && !this.accepts(subscription, event, order)) {
+      return;
+    }
+    final @Nullable EventQuarantine quarantine = this.quarantine;
+    if (quarantine != null && !quarantine.admits(subscription)) {
+      return;
+    }
+    final @Nullable DispatchEvent recording = FlightRecorder.AVAILABLE ? DispatchEvent.start() : null;
+    if (metrics == null && quarantine == null && recording == null) {
+      try {
+        subscription.subscriber().on(event);
+      } catch (final Throwable t) {
+        this.exceptions.eventExceptionCaught(this, subscription, event, t);
+      }
+      return;
+    }
+    final boolean timed = metrics != null || quarantine != null;
+    final long start = timed ? System.nanoTime() : 0;
+    @Nullable Throwable failure = null;
+    try {
+      subscription.subscriber().on(event);
+    } catch (final Throwable t) {
+      failure = t;
+    }
+    final long nanos = timed ? System.nanoTime() - start : 0;
+    final boolean failed = failure != null;
+    // recorded before the exception handler is called, as it may rethrow
+    if (metrics != null) {
+      metrics.invoked(subscription, nanos, failed);
+    }
+    if (quarantine != null) {
+      quarantine.invoked(subscription, nanos, failed);
+    }
+    if (recording != null) {
+      recording.finish(event.getClass(), subscription.subscriber().getClass(), subscription.config().order(), failed);
+    }
+    if (failure != null) {
+      this.exceptions.eventExceptionCaught(this, subscription, event, failure);
+    }
+  }
+
+  /**
+   * Checks if {@code subscription} accepts {@code event}, posted at the order provided in {@code order}.
+   *
+   * <p>The {@link DispatchPlan dispatch plan} of the event already applies these checks, so this is only called
+   * for buses that override it, right before each subscriber would be called. Overrides should call this
+   * implementation, and may reject events that it accepts.</p>
+   *
+   * @param subscription the event subscription
+   * @param event the event
+   * @param order the order the event was posted at, if any
+   * @return {@code true} if the subscriber should be called with the event
+   * @since 1.0.0
+   */
   @SuppressWarnings("RedundantIfStatement")
   protected boolean accepts(final EventSubscription<? super E> subscription, final E event, final OptionalInt order) {
     final EventConfig config = subscription.config();
@@ -110,4 +431,56 @@ public class SimpleEventBus<E> implements EventBus<E> {
   protected boolean currentlyCancelled(final E event) {
     return event instanceof Cancellable && ((Cancellable) event).cancelled();
   }
+
+  private final class PlannedPoster<T extends E> implements Poster<T> {
+    private final Class<T> type;
+    // replaced, never modified - a stale read only costs a refresh
+    private Planned<E> planned;
+
+    PlannedPoster(final Class<T> type) {
+      this.type = requireNonNull(type, "type");
+      this.planned = this.refresh();
+    }
+
+    @Override
+    public Class<T> type() {
+      return this.type;
+    }
+
+    @Override
+    public void post(final T event, final OptionalInt order) {
+      BusPoster.check(this.type, event);
+      requireNonNull(order, "order");
+      SimpleEventBus.this.post(this.current(), event, order);
+    }
+
+    @Override
+    public void post(final Supplier<? extends T> supplier) {
+      final DispatchPlan<E> plan = this.current();
+      if (plan.isEmpty()) {
+        return;
+      }
+      final T event = supplier.get();
+      BusPoster.check(this.type, event);
+      SimpleEventBus.this.post(plan, event, OptionalInt.empty());
+    }
+
+    private DispatchPlan<E> current() {
+      Planned<E> planned = this.planned;
+      if (planned.version != SimpleEventBus.this.registry.version()) {
+        planned = this.refresh();
+        this.planned = planned;
+      }
+      return planned.plan;
+    }
+
+    private Planned<E> refresh() {
+      // the version is read first, so that it can only be older than the plan
+      final long version = SimpleEventBus.this.registry.version();
+      return new Planned<>(version, SimpleEventBus.this.registry.plan(this.type));
+    }
+  }
+
+  private record Planned<E>(long version, DispatchPlan<E> plan) {
+  }
 }
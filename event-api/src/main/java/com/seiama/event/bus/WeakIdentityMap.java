@@ -0,0 +1,116 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.bus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+// a concurrent map that compares keys by identity and only references them weakly, dropping the entry of a key once
+// it has been collected - values must not reference their key, or it is never collected
+@NullMarked
+final class WeakIdentityMap<K, V> {
+  private final ConcurrentMap<Object, V> map = new ConcurrentHashMap<>();
+  private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+  @Nullable V get(final K key) {
+    return this.map.get(new Lookup(key));
+  }
+
+  V computeIfAbsent(final K key, final Function<? super K, ? extends V> function) {
+    this.expunge();
+    return this.map.computeIfAbsent(new WeakKey<>(key, this.queue), ignored -> function.apply(key));
+  }
+
+  @SuppressWarnings("unchecked")
+  void forEach(final BiConsumer<? super K, ? super V> action) {
+    this.map.forEach((reference, value) -> {
+      final @Nullable K key = ((WeakKey<K>) reference).get();
+      if (key != null) {
+        action.accept(key, value);
+      }
+    });
+  }
+
+  void clear() {
+    this.map.clear();
+  }
+
+  // removes the entries of collected keys
+  private void expunge() {
+    @Nullable Reference<? extends K> reference;
+    while ((reference = this.queue.poll()) != null) {
+      this.map.remove(reference);
+    }
+  }
+
+  private static final class WeakKey<K> extends WeakReference<K> {
+    private final int hash;
+
+    WeakKey(final K key, final ReferenceQueue<? super K> queue) {
+      super(key, queue);
+      this.hash = System.identityHashCode(key);
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if (other == this) {
+        return true;
+      }
+      // a collected key is only equal to itself, so that it can still be removed
+      final @Nullable K key = this.get();
+      return key != null && other instanceof WeakKey<?> that && that.get() == key;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  // a strongly referenced key, so that lookups do not create references
+  private static final class Lookup {
+    private final Object key;
+
+    Lookup(final Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      return other instanceof WeakKey<?> that && that.get() == this.key;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.key);
+    }
+  }
+}
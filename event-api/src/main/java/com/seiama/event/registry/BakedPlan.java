@@ -0,0 +1,142 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.registry;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+// the baked plan of an event type, owned by a registry
+//
+// subscribers may well reach their bus and registry, so an event type must never hold a node strongly, or it would
+// keep the registry alive for as long as the type is loaded (JDK-8136353). registries hold their nodes strongly, and
+// event types only hold their node weakly through a per-registry ClassValue. in turn, nodes and their plans only
+// reference their event type weakly, so that a registry never keeps an event type loaded, and drops the nodes of
+// unloaded types
+@NullMarked
+final class BakedPlan<E> {
+  private final Type<E> event;
+  volatile @Nullable DispatchPlan<E> plan;
+  private final WeakReference<BakedPlan<E>> self = new WeakReference<>(this);
+  // baked event types that have this event type as an ancestor, which are only referenced weakly
+  private final Set<WeakReference<BakedPlan<E>>> dependents = ConcurrentHashMap.newKeySet();
+
+  private BakedPlan(final Class<? extends E> event, final ReferenceQueue<Class<?>> unloaded) {
+    this.event = new Type<>(event, this, unloaded);
+  }
+
+  // the event type, or null once it has been unloaded
+  @Nullable Class<? extends E> event() {
+    return this.event.get();
+  }
+
+  // the baked event types that have this event type as an ancestor and are still loaded
+  List<BakedPlan<E>> dependents() {
+    final List<BakedPlan<E>> dependents = new ArrayList<>(this.dependents.size());
+    for (final WeakReference<BakedPlan<E>> reference : this.dependents) {
+      final @Nullable BakedPlan<E> dependent = reference.get();
+      if (dependent != null) {
+        dependents.add(dependent);
+      } else {
+        this.dependents.remove(reference);
+      }
+    }
+    return dependents;
+  }
+
+  // the nodes of a registry
+  static final class Cache<E> {
+    private final ClassValue<Slot<E>> slots = slots();
+    private final Set<BakedPlan<E>> nodes = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<Class<?>> unloaded = new ReferenceQueue<>();
+
+    BakedPlan<E> get(final Class<?> event) {
+      final Slot<E> slot = this.slots.get(event);
+      final @Nullable BakedPlan<E> node = slot.get();
+      return node != null ? node : this.create(slot, event);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BakedPlan<E> create(final Slot<E> slot, final Class<?> event) {
+      synchronized (slot) {
+        @Nullable BakedPlan<E> node = slot.get();
+        if (node == null) {
+          this.expunge();
+          node = new BakedPlan<>((Class<? extends E>) event, this.unloaded);
+          this.nodes.add(node);
+          slot.node = node.self;
+        }
+        return node;
+      }
+    }
+
+    // registers a baked event type with every one of its ancestors, including itself
+    void depend(final BakedPlan<E> dependent, final List<? extends Class<?>> ancestors) {
+      for (final Class<?> ancestor : ancestors) {
+        this.get(ancestor).dependents.add(dependent.self);
+      }
+    }
+
+    private void expunge() {
+      for (Reference<? extends Class<?>> reference; (reference = this.unloaded.poll()) != null; ) {
+        this.nodes.remove(((Type<?>) reference).node);
+      }
+    }
+
+    // created in a static context, so that the ClassValue does not capture its cache
+    private static <E> ClassValue<Slot<E>> slots() {
+      return new ClassValue<>() {
+        @Override
+        protected Slot<E> computeValue(final Class<?> event) {
+          return new Slot<>();
+        }
+      };
+    }
+  }
+
+  // all that an event type holds of its node
+  private static final class Slot<E> {
+    volatile @Nullable WeakReference<BakedPlan<E>> node;
+
+    @Nullable BakedPlan<E> get() {
+      final @Nullable WeakReference<BakedPlan<E>> node = this.node;
+      return node != null ? node.get() : null;
+    }
+  }
+
+  private static final class Type<E> extends WeakReference<Class<? extends E>> {
+    final BakedPlan<E> node;
+
+    Type(final Class<? extends E> event, final BakedPlan<E> node, final ReferenceQueue<Class<?>> unloaded) {
+      super(event, unloaded);
+      this.node = node;
+    }
+  }
+}
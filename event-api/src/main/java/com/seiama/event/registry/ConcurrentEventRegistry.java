@@ -0,0 +1,541 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.registry;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.EventSubscriber;
+import com.seiama.event.EventSubscription;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An event registry for heavily concurrent subscription churn.
+ *
+ * <p>Unlike {@link SimpleEventRegistry}, there is no registry-wide lock: subscriptions are held in a
+ * concurrent map of immutable, per-event type lists that are replaced on change, so mutations to unrelated
+ * event types never contend with each other. A mutation discards the baked {@link DispatchPlan dispatch plans}
+ * of the event types that have the changed type as an ancestor, and they are re-baked on their next lookup.</p>
+ *
+ * <p>Lookups of baked plans are lock-free. {@link #transaction() Transactions}, {@link #unsubscribeIf(Predicate)} and
+ * {@link #unsubscribeAll(Object)} are applied one at a time, and plans are not baked while a transaction is being
+ * applied. Baked plans are looked up through a {@link ClassValue}, and
+ * baking an event type does not keep it, or its class loader, from being unloaded, as long as no subscriber of this
+ * registry references it. Subscribers referencing this registry do not keep it alive either.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+public class ConcurrentEventRegistry<E> implements EventRegistry<E> {
+  // copy-on-write: the lists are never modified, only replaced
+  private final ConcurrentMap<Class<? extends E>, List<EventSubscription<? super E>>> unbaked = new ConcurrentHashMap<>();
+  // plans are only written while holding the monitor of their BakedPlan
+  private final BakedPlan.Cache<E> baked = new BakedPlan.Cache<>();
+  // the sets are only modified while computing their mapping
+  private final ConcurrentMap<Object, Set<EventSubscriptionImpl<? extends E>>> owned = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, Function<?, ?>> keys = new ConcurrentHashMap<>();
+
+  private final Object transactionLock = new Object();
+  // odd while a transaction is being applied
+  private final AtomicLong transactions = new AtomicLong();
+  private final AtomicLong version = new AtomicLong();
+
+  private final Class<E> type;
+
+  /**
+   * Constructs a new {@code ConcurrentEventRegistry}.
+   *
+   * @param type the base event type
+   * @since 1.0.0
+   */
+  public ConcurrentEventRegistry(final Class<E> type) {
+    this.type = requireNonNull(type, "type");
+  }
+
+  @Override
+  public Class<E> type() {
+    return this.type;
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe0(null, event, null, config, subscriber);
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    requireNonNull(event, "event");
+    requireNonNull(key, "key");
+    this.checkKeyed(event);
+    return this.subscribe0(null, event, key, config, subscriber);
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe0(requireNonNull(owner, "owner"), event, null, config, subscriber);
+  }
+
+  private <T extends E> EventSubscription<T> subscribe0(final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    final EventSubscriptionImpl<T> subscription = this.create(owner, event, key, config, subscriber);
+    this.unbaked.compute(event, (type, subscriptions) -> with(subscriptions, yayGenerics(subscription)));
+    this.own(subscription);
+    this.invalidate(event);
+    return subscription;
+  }
+
+  private <T extends E> EventSubscriptionImpl<T> create(final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    requireNonNull(event, "event");
+    requireNonNull(config, "config");
+    requireNonNull(subscriber, "subscriber");
+    return new EventSubscriptionImpl<>(this, owner, event, key, config, subscriber);
+  }
+
+  @Override
+  public <T extends E> void key(final Class<T> event, final Function<? super T, ?> key) {
+    requireNonNull(event, "event");
+    requireNonNull(key, "key");
+    if (this.keys.putIfAbsent(event, key) != null) {
+      throw new IllegalArgumentException("A key function has already been registered for " + event);
+    }
+    this.invalidate(event);
+  }
+
+  // key functions are never removed, so the check cannot be invalidated later
+  private void checkKeyed(final Class<? extends E> event) {
+    if (this.key(event) == null) {
+      throw new IllegalArgumentException("No key function has been registered for " + event);
+    }
+  }
+
+  // finds the key function of the nearest ancestor of an event type
+  @SuppressWarnings("unchecked")
+  private @Nullable Function<? super E, ?> key(final Class<? extends E> event) {
+    for (final Class<?> type : Internals.ancestors(event, this.type)) {
+      final @Nullable Function<?, ?> key = this.keys.get(type);
+      if (key != null) {
+        return (Function<? super E, ?>) key;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Transaction<E> transaction() {
+    return new TransactionImpl();
+  }
+
+  @Override
+  public void unsubscribeIf(final Predicate<EventSubscription<? super E>> predicate) {
+    requireNonNull(predicate, "predicate");
+    // bulk removals are applied one at a time, as transactions are
+    synchronized (this.transactionLock) {
+      for (final Class<? extends E> event : this.unbaked.keySet()) {
+        final List<EventSubscription<?>> removed = new ArrayList<>();
+        this.unbaked.computeIfPresent(event, (key, subscriptions) -> {
+          removed.clear(); // the function may be retried
+          final List<EventSubscription<? super E>> matching = new ArrayList<>();
+          for (final EventSubscription<? super E> subscription : subscriptions) {
+            if (predicate.test(subscription)) {
+              matching.add(subscription);
+            }
+          }
+          // only marked once the predicate has been tested against every subscription, so that a predicate throwing
+          // an exception leaves them all registered, and still disposable
+          for (final EventSubscription<? super E> subscription : matching) {
+            if (((EventSubscriptionImpl<?>) subscription).markDisposed()) {
+              removed.add(subscription);
+            }
+          }
+          return removed.isEmpty() ? subscriptions : without(subscriptions, Set.copyOf(removed));
+        });
+        if (!removed.isEmpty()) {
+          for (final EventSubscription<?> subscription : removed) {
+            this.disown(subscription);
+          }
+          this.invalidate(event);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void unsubscribeAll(final Object owner) {
+    requireNonNull(owner, "owner");
+    synchronized (this.transactionLock) {
+      final @Nullable Set<EventSubscriptionImpl<? extends E>> owned = this.owned.remove(owner);
+      if (owned != null) {
+        for (final EventSubscriptionImpl<? extends E> subscription : owned) {
+          if (subscription.markDisposed()) {
+            this.remove(subscription);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public long version() {
+    return this.version.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The snapshot contains all or none of the changes of each {@link #transaction() transaction}, but
+   * may contain only some of the subscriptions added or removed concurrently outside of a transaction.</p>
+   *
+   * @return a frozen registry
+   * @since 1.0.0
+   */
+  @Override
+  public FrozenEventRegistry<E> freeze() {
+    synchronized (this.transactionLock) {
+      // read first, so that it can only be older than the snapshot
+      final long version = this.version.get();
+      final Map<Class<?>, List<EventSubscription<? super E>>> subscriptions = new HashMap<>(this.unbaked);
+      final Set<Class<? extends E>> known = new HashSet<>(this.unbaked.keySet());
+      // every baked event type has the base type as an ancestor
+      for (final BakedPlan<E> baked : this.baked.get(this.type).dependents()) {
+        final @Nullable Class<? extends E> event = baked.event();
+        if (event != null) {
+          known.add(event);
+        }
+      }
+      return new FrozenEventRegistry<>(this.type, subscriptions, this.keys, known, version);
+    }
+  }
+
+  @Override
+  public List<EventSubscription<? super E>> subscriptions(final Class<? extends E> event) {
+    return this.plan(event).subscriptions();
+  }
+
+  @Override
+  public DispatchPlan<E> plan(final Class<? extends E> event) {
+    final BakedPlan<E> baked = this.baked.get(event);
+    final @Nullable DispatchPlan<E> plan = baked.plan;
+    if (plan != null) {
+      return plan;
+    }
+    return this.bake(baked, event);
+  }
+
+  private DispatchPlan<E> bake(final BakedPlan<E> baked, final Class<? extends E> event) {
+    final List<? extends Class<?>> types = Internals.ancestors(event, this.type);
+    // registered before reading, so that a mutation that we do not observe will discard our plan
+    this.baked.depend(baked, types);
+    while (true) {
+      // baked while holding the monitor, so that a mutation discarding it waits for us to finish
+      synchronized (baked) {
+        @Nullable DispatchPlan<E> plan = baked.plan;
+        if (plan == null) {
+          plan = this.computePlan(event, types);
+          baked.plan = plan;
+        }
+        if (plan != null) {
+          return plan;
+        }
+      }
+      synchronized (this.transactionLock) {
+        // wait for the transaction to be applied
+      }
+    }
+  }
+
+  // returns null if a transaction was being applied, as the plan may only contain some of its changes
+  private @Nullable DispatchPlan<E> computePlan(final Class<? extends E> event, final List<? extends Class<?>> types) {
+    final long transactions = this.transactions.get();
+    if ((transactions & 1) != 0) {
+      return null;
+    }
+    final List<EventSubscription<? super E>> subscriptions = new ArrayList<>();
+    for (final Class<?> type : types) {
+      final @Nullable List<EventSubscription<? super E>> current = this.unbaked.get(type);
+      if (current != null) {
+        subscriptions.addAll(current);
+      }
+    }
+    final @Nullable Function<? super E, ?> key = this.key(event);
+    if (this.transactions.get() != transactions) {
+      return null;
+    }
+    return DispatchPlan.of(event, subscriptions, key);
+  }
+
+  // discards the baked plans of every event type that has the changed type as an ancestor
+  private void invalidate(final Class<?> changed) {
+    for (final BakedPlan<E> dependent : this.baked.get(changed).dependents()) {
+      synchronized (dependent) {
+        dependent.plan = null;
+      }
+    }
+    // after discarding, so that the new version is never seen with old plans
+    this.version.incrementAndGet();
+  }
+
+  private void remove(final EventSubscriptionImpl<? extends E> subscription) {
+    this.unbaked.computeIfPresent(subscription.event, (key, subscriptions) -> without(subscriptions, Set.of(subscription)));
+    this.disown(subscription);
+    this.invalidate(subscription.event);
+  }
+
+  private void own(final EventSubscriptionImpl<? extends E> subscription) {
+    final @Nullable Object owner = subscription.owner;
+    if (owner != null) {
+      this.owned.compute(owner, (key, owned) -> {
+        final Set<EventSubscriptionImpl<? extends E>> result = owned != null ? owned : new HashSet<>();
+        result.add(subscription);
+        return result;
+      });
+      // disposed concurrently, in which case it may have been disowned before we owned it
+      if (subscription.disposed.get()) {
+        this.disown(subscription);
+      }
+    }
+  }
+
+  private void disown(final EventSubscription<?> subscription) {
+    final @Nullable Object owner = subscription.owner();
+    if (owner != null) {
+      this.owned.computeIfPresent(owner, (key, owned) -> owned.remove(subscription) && owned.isEmpty() ? null : owned);
+    }
+  }
+
+  private static <T> List<T> with(final @Nullable List<T> list, final T element) {
+    if (list == null) {
+      return List.of(element);
+    }
+    final List<T> result = new ArrayList<>(list.size() + 1);
+    result.addAll(list);
+    result.add(element);
+    return Collections.unmodifiableList(result);
+  }
+
+  private static <T> @Nullable List<T> without(final List<T> list, final Set<?> elements) {
+    final List<T> result = new ArrayList<>(list.size());
+    for (final T element : list) {
+      if (!elements.contains(element)) {
+        result.add(element);
+      }
+    }
+    return result.isEmpty() ? null : Collections.unmodifiableList(result);
+  }
+
+  private static final class EventSubscriptionImpl<T> implements EventSubscription<T> {
+    // weak, so that holding on to a subscription does not keep the registry alive
+    private final WeakReference<ConcurrentEventRegistry<? super T>> registry;
+    private final @Nullable Object owner;
+    private final Class<T> event;
+    private final @Nullable Object key;
+    private final EventConfig config;
+    private final EventSubscriber<? super T> subscriber;
+    private final AtomicBoolean disposed = new AtomicBoolean();
+
+    EventSubscriptionImpl(final ConcurrentEventRegistry<? super T> registry, final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      this.registry = new WeakReference<>(registry);
+      this.owner = owner;
+      this.event = event;
+      this.key = key;
+      this.config = config;
+      this.subscriber = subscriber;
+    }
+
+    // only the caller that disposes a subscription first gets to remove it
+    boolean markDisposed() {
+      return this.disposed.compareAndSet(false, true);
+    }
+
+    @Override
+    public Class<T> event() {
+      return this.event;
+    }
+
+    @Override
+    public EventConfig config() {
+      return this.config;
+    }
+
+    @Override
+    public EventSubscriber<? super T> subscriber() {
+      return this.subscriber;
+    }
+
+    @Override
+    public @Nullable Object owner() {
+      return this.owner;
+    }
+
+    @Override
+    public @Nullable Object key() {
+      return this.key;
+    }
+
+    @Override
+    public void dispose() {
+      final @Nullable ConcurrentEventRegistry<? super T> registry = this.registry.get();
+      // a collected registry has nothing left to dispose
+      if (registry != null && this.markDisposed()) {
+        registry.remove(this);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", this.getClass().getSimpleName() + "[", "]")
+        .add("owner=" + this.owner)
+        .add("event=" + this.event)
+        .add("key=" + this.key)
+        .add("config=" + this.config)
+        .add("subscriber=" + this.subscriber)
+        .toString();
+    }
+  }
+
+  private final class TransactionImpl implements Transaction<E> {
+    private final List<EventSubscriptionImpl<? extends E>> subscribed = new ArrayList<>();
+    private final List<EventSubscriptionImpl<? extends E>> unsubscribed = new ArrayList<>();
+    private boolean committed;
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      return this.stage(null, event, null, config, subscriber);
+    }
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      return this.stage(requireNonNull(owner, "owner"), event, null, config, subscriber);
+    }
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      requireNonNull(event, "event");
+      requireNonNull(key, "key");
+      ConcurrentEventRegistry.this.checkKeyed(event);
+      return this.stage(null, event, key, config, subscriber);
+    }
+
+    private <T extends E> EventSubscription<T> stage(final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      this.checkOpen();
+      final EventSubscriptionImpl<T> subscription = ConcurrentEventRegistry.this.create(owner, event, key, config, subscriber);
+      this.subscribed.add(subscription);
+      return subscription;
+    }
+
+    @Override
+    public void unsubscribe(final EventSubscription<? extends E> subscription) {
+      requireNonNull(subscription, "subscription");
+      this.checkOpen();
+      // subscriptions of other registries are ignored, as with SimpleEventRegistry
+      if (subscription instanceof EventSubscriptionImpl<? extends E> impl && impl.registry.get() == ConcurrentEventRegistry.this) {
+        if (!this.subscribed.remove(impl)) {
+          this.unsubscribed.add(impl);
+        }
+      }
+    }
+
+    @Override
+    public void commit() {
+      this.checkOpen();
+      this.committed = true;
+      final Map<Class<? extends E>, Set<EventSubscriptionImpl<? extends E>>> removed = new HashMap<>();
+      for (final EventSubscriptionImpl<? extends E> subscription : this.unsubscribed) {
+        if (subscription.markDisposed()) {
+          removed.computeIfAbsent(subscription.event, key -> new HashSet<>()).add(subscription);
+        }
+      }
+      final Map<Class<? extends E>, List<EventSubscriptionImpl<? extends E>>> added = new HashMap<>();
+      for (final EventSubscriptionImpl<? extends E> subscription : this.subscribed) {
+        // disposed before the transaction was committed
+        if (!subscription.disposed.get()) {
+          added.computeIfAbsent(subscription.event, key -> new ArrayList<>()).add(subscription);
+        }
+      }
+      final Set<Class<? extends E>> changed = new HashSet<>(removed.keySet());
+      changed.addAll(added.keySet());
+      if (changed.isEmpty()) {
+        return;
+      }
+      synchronized (ConcurrentEventRegistry.this.transactionLock) {
+        ConcurrentEventRegistry.this.transactions.incrementAndGet();
+        try {
+          for (final Class<? extends E> event : changed) {
+            final Set<?> removing = removed.getOrDefault(event, Set.of());
+            final List<EventSubscriptionImpl<? extends E>> adding = added.getOrDefault(event, List.of());
+            ConcurrentEventRegistry.this.unbaked.compute(event, (key, subscriptions) -> {
+              final List<EventSubscription<? super E>> result = new ArrayList<>();
+              if (subscriptions != null) {
+                result.addAll(subscriptions);
+              }
+              result.removeAll(removing);
+              for (final EventSubscriptionImpl<? extends E> subscription : adding) {
+                // checked again while computing, as disposing removes the subscription from this same mapping
+                if (!subscription.disposed.get()) {
+                  result.add(yayGenerics(subscription));
+                }
+              }
+              return result.isEmpty() ? null : Collections.unmodifiableList(result);
+            });
+          }
+          for (final Set<EventSubscriptionImpl<? extends E>> subscriptions : removed.values()) {
+            subscriptions.forEach(ConcurrentEventRegistry.this::disown);
+          }
+          for (final List<EventSubscriptionImpl<? extends E>> subscriptions : added.values()) {
+            subscriptions.forEach(ConcurrentEventRegistry.this::own);
+          }
+          changed.forEach(ConcurrentEventRegistry.this::invalidate);
+        } finally {
+          ConcurrentEventRegistry.this.transactions.incrementAndGet();
+        }
+      }
+    }
+
+    private void checkOpen() {
+      if (this.committed) {
+        throw new IllegalStateException("Transaction has already been committed");
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> EventSubscription<? super E> yayGenerics(final EventSubscription<?> subscription) {
+    return (EventSubscription<? super E>) subscription;
+  }
+}
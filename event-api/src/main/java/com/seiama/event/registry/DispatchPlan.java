@@ -0,0 +1,479 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.registry;
+
+import com.seiama.event.Cancellable;
+import com.seiama.event.EventConfig;
+import com.seiama.event.EventSubscription;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A precomputed plan for dispatching events of a single type.
+ *
+ * <p>A plan holds the subscriptions that receive events of exactly {@link #event()}, sorted by
+ * {@link EventConfig#order() order}. Subscriptions that only accept their {@link EventConfig#exact() exact}
+ * event type have already been removed if that type is not {@link #event()}, and checks for
+ * {@link EventConfig#acceptsCancelled() cancelled events} are only required where {@link #skipsCancelled(int)}
+ * says so.</p>
+ *
+ * <p>As subscriptions are sorted by order, the subscriptions for a single order form a contiguous slice
+ * between {@link #start(int)} and {@link #end(int)}.</p>
+ *
+ * <p>A plan created with a key function holds its {@link EventSubscription#key() keyed} subscriptions apart, in a
+ * sorted slice for each key. The subscriptions between {@code 0} and {@link #size()} are then only the unkeyed ones,
+ * and {@link #select(Object)} gets the plan that also contains the keyed subscriptions for a specific event. The
+ * index of keyed subscriptions is shared with the plans derived from a plan when subscriptions are added or removed,
+ * which only replace the slice of the affected key.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+public final class DispatchPlan<E> {
+  private static final Comparator<EventSubscription<?>> ORDER_COMPARATOR = Comparator.comparingInt(subscription -> subscription.config().order());
+  private static final EventSubscription<?>[] EMPTY = new EventSubscription<?>[0];
+
+  // weak, so that registries holding plans never keep their event types loaded
+  private final WeakReference<Class<? extends E>> event;
+  private final EventSubscription<? super E>[] subscriptions;
+  private final int[] orders;
+  private final boolean @Nullable [] skipsCancelled;
+  private final List<EventSubscription<? super E>> view;
+  private final @Nullable Index<E> index;
+
+  private DispatchPlan(final WeakReference<Class<? extends E>> event, final EventSubscription<? super E>[] subscriptions, final @Nullable Index<E> index) {
+    this.event = event;
+    this.subscriptions = subscriptions;
+    this.index = index;
+    this.orders = new int[subscriptions.length];
+    boolean @Nullable [] skipsCancelled = null;
+    final @Nullable Class<? extends E> type = event.get();
+    final boolean cancellable = type != null && Cancellable.class.isAssignableFrom(type);
+    for (int i = 0; i < subscriptions.length; i++) {
+      final EventConfig config = subscriptions[i].config();
+      this.orders[i] = config.order();
+      if (cancellable && !config.acceptsCancelled()) {
+        if (skipsCancelled == null) {
+          skipsCancelled = new boolean[subscriptions.length];
+        }
+        skipsCancelled[i] = true;
+      }
+    }
+    this.skipsCancelled = skipsCancelled;
+    this.view = Collections.unmodifiableList(Arrays.asList(subscriptions));
+  }
+
+  /**
+   * Creates a plan for events of type {@code event}.
+   *
+   * <p>Subscriptions in {@code subscriptions} are sorted by order, keeping their relative position when
+   * orders are equal.</p>
+   *
+   * @param event the event type
+   * @param subscriptions the subscriptions registered for {@code event} and its supertypes
+   * @param <E> the base event type
+   * @return a plan
+   * @since 1.0.0
+   */
+  public static <E> DispatchPlan<E> of(final Class<? extends E> event, final List<? extends EventSubscription<? super E>> subscriptions) {
+    return of(event, subscriptions, null);
+  }
+
+  /**
+   * Creates a plan for events of type {@code event}, indexing keyed subscriptions by the keys {@code key} extracts.
+   *
+   * <p>Subscriptions in {@code subscriptions} are sorted by order, keeping their relative position when
+   * orders are equal.</p>
+   *
+   * @param event the event type
+   * @param subscriptions the subscriptions registered for {@code event} and its supertypes
+   * @param key the function extracting the key of an event, or {@code null} if keyed subscriptions never receive events
+   * @param <E> the base event type
+   * @return a plan
+   * @see EventRegistry#key(Class, Function)
+   * @since 1.0.0
+   */
+  public static <E> DispatchPlan<E> of(final Class<? extends E> event, final List<? extends EventSubscription<? super E>> subscriptions, final @Nullable Function<? super E, ?> key) {
+    requireNonNull(event, "event");
+    final List<EventSubscription<? super E>> accepted = new ArrayList<>(subscriptions.size());
+    for (final EventSubscription<? super E> subscription : subscriptions) {
+      if (!subscription.config().exact() || subscription.event() == event) {
+        accepted.add(subscription);
+      }
+    }
+    accepted.sort(ORDER_COMPARATOR);
+    final List<EventSubscription<? super E>> unkeyed = new ArrayList<>(accepted.size());
+    final @Nullable Index<E> index = key != null ? new Index<>(key) : null;
+    final Map<Object, List<EventSubscription<? super E>>> keyed = new HashMap<>();
+    for (final EventSubscription<? super E> subscription : accepted) {
+      final @Nullable Object k = subscription.key();
+      if (k == null) {
+        unkeyed.add(subscription);
+      } else if (index != null) {
+        keyed.computeIfAbsent(k, ignored -> new ArrayList<>()).add(subscription);
+      }
+    }
+    if (index != null) {
+      keyed.forEach((k, slice) -> index.slices.put(k, new Slice<>(array(slice))));
+    }
+    return new DispatchPlan<>(new WeakReference<>(event), array(unkeyed), index);
+  }
+
+  /**
+   * Creates a plan with {@code subscription} merged into this plan, without re-sorting.
+   *
+   * <p>Subscriptions with equal orders are kept in the order a stable sort over {@code types}
+   * would produce: by the position of their event type in {@code types}, then by registration.
+   * A keyed subscription is inserted into the slice of its key in place, and this plan is returned.</p>
+   *
+   * @param subscription the subscription, registered after every subscription in this plan
+   * @param types the event types this plan was built from, in the order they were collected
+   * @return a plan
+   */
+  DispatchPlan<E> with(final EventSubscription<?> subscription, final List<? extends Class<?>> types) {
+    if (subscription.config().exact() && subscription.event() != this.event.get()) {
+      return this;
+    }
+    final @Nullable Object key = subscription.key();
+    if (key == null) {
+      return new DispatchPlan<>(this.event, insert(this.subscriptions, subscription, types), this.index);
+    }
+    final @Nullable Index<E> index = this.index;
+    if (index != null) {
+      index.slices.compute(key, (k, slice) -> new Slice<>(insert(slice != null ? slice.subscriptions : empty(), subscription, types)));
+    }
+    return this;
+  }
+
+  /**
+   * Creates a plan with {@code subscription} removed from this plan.
+   *
+   * <p>A keyed subscription is removed from the slice of its key in place, and this plan is returned.</p>
+   *
+   * @param subscription the subscription
+   * @return a plan, or {@code this} if {@code subscription} is not part of this plan
+   */
+  DispatchPlan<E> without(final EventSubscription<?> subscription) {
+    final @Nullable Object key = subscription.key();
+    if (key == null) {
+      final EventSubscription<? super E> @Nullable [] subscriptions = remove(this.subscriptions, subscription);
+      return subscriptions != null ? new DispatchPlan<>(this.event, subscriptions, this.index) : this;
+    }
+    final @Nullable Index<E> index = this.index;
+    if (index != null) {
+      index.slices.computeIfPresent(key, (k, slice) -> {
+        final EventSubscription<? super E> @Nullable [] subscriptions = remove(slice.subscriptions, subscription);
+        if (subscriptions == null) {
+          return slice;
+        }
+        return subscriptions.length == 0 ? null : new Slice<>(subscriptions);
+      });
+    }
+    return this;
+  }
+
+  // inserts a subscription after every subscription that sorts before or equal to it
+  @SuppressWarnings("unchecked")
+  private static <E> EventSubscription<? super E>[] insert(final EventSubscription<? super E>[] sorted, final EventSubscription<?> subscription, final List<? extends Class<?>> types) {
+    final int order = subscription.config().order();
+    final int rank = types.indexOf(subscription.event());
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      final int existing = sorted[mid].config().order();
+      if (existing < order || (existing == order && types.indexOf(sorted[mid].event()) <= rank)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    final EventSubscription<? super E>[] result = Arrays.copyOf(sorted, sorted.length + 1);
+    System.arraycopy(sorted, low, result, low + 1, sorted.length - low);
+    result[low] = (EventSubscription<? super E>) subscription;
+    return result;
+  }
+
+  // returns null if the subscription is not present
+  private static <E> EventSubscription<? super E> @Nullable [] remove(final EventSubscription<? super E>[] subscriptions, final EventSubscription<?> subscription) {
+    for (int i = 0; i < subscriptions.length; i++) {
+      if (subscriptions[i] == subscription) {
+        final EventSubscription<? super E>[] result = Arrays.copyOf(subscriptions, subscriptions.length - 1);
+        System.arraycopy(subscriptions, i + 1, result, i, result.length - i);
+        return result;
+      }
+    }
+    return null;
+  }
+
+  // merges two sorted arrays, taking from the first when orders are equal
+  private static <E> EventSubscription<? super E>[] merge(final EventSubscription<? super E>[] first, final int[] orders, final EventSubscription<? super E>[] second) {
+    final EventSubscription<? super E>[] result = Arrays.copyOf(first, first.length + second.length);
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < result.length; k++) {
+      if (j == second.length || (i < first.length && orders[i] <= second[j].config().order())) {
+        result[k] = first[i++];
+      } else {
+        result[k] = second[j++];
+      }
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> EventSubscription<? super E>[] array(final List<EventSubscription<? super E>> subscriptions) {
+    return (EventSubscription<? super E>[]) subscriptions.toArray(EMPTY);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> EventSubscription<? super E>[] empty() {
+    return (EventSubscription<? super E>[]) EMPTY;
+  }
+
+  /**
+   * Gets the event type.
+   *
+   * <p>A plan only references its event type weakly, so that holding on to a plan never keeps the type loaded.</p>
+   *
+   * @return the event type
+   * @throws IllegalStateException if the event type has been unloaded
+   * @since 1.0.0
+   */
+  public Class<? extends E> event() {
+    final @Nullable Class<? extends E> event = this.event.get();
+    if (event == null) {
+      throw new IllegalStateException("The event type of this plan has been unloaded");
+    }
+    return event;
+  }
+
+  /**
+   * Determines whether this plan has keyed subscriptions that are indexed by key.
+   *
+   * @return whether {@link #select(Object)} may return a plan other than this plan
+   * @since 1.0.0
+   */
+  public boolean isKeyed() {
+    final @Nullable Index<E> index = this.index;
+    return index != null && !index.slices.isEmpty();
+  }
+
+  /**
+   * Gets the plan for dispatching {@code event}.
+   *
+   * <p>The plan contains the unkeyed subscriptions of this plan, merged in dispatch order with the keyed
+   * subscriptions for the key of {@code event}; unkeyed subscriptions come first when orders are equal. Looking
+   * up the keyed subscriptions takes constant time, regardless of how many keys have subscriptions, and the merged
+   * plan is kept until either of its parts changes.</p>
+   *
+   * @param event the event, of type {@link #event()}
+   * @return the plan for {@code event}, which is this plan if there are no keyed subscriptions for its key
+   * @since 1.0.0
+   */
+  public DispatchPlan<E> select(final E event) {
+    final @Nullable Index<E> index = this.index;
+    if (index == null || index.slices.isEmpty()) {
+      return this;
+    }
+    final @Nullable Object key = index.key.apply(event);
+    final @Nullable Slice<E> slice = key != null ? index.slices.get(key) : null;
+    return slice != null ? slice.merged(this) : this;
+  }
+
+  /**
+   * Gets the number of subscriptions, not counting keyed subscriptions.
+   *
+   * @return the number of subscriptions
+   * @since 1.0.0
+   */
+  public int size() {
+    return this.subscriptions.length;
+  }
+
+  /**
+   * Determines whether this plan has no subscriptions, including keyed subscriptions.
+   *
+   * @return whether this plan has no subscriptions
+   * @since 1.0.0
+   */
+  public boolean isEmpty() {
+    return this.subscriptions.length == 0 && !this.isKeyed();
+  }
+
+  /**
+   * Gets the subscription at {@code index}.
+   *
+   * @param index the index
+   * @return the subscription
+   * @since 1.0.0
+   */
+  public EventSubscription<? super E> subscription(final int index) {
+    return this.subscriptions[index];
+  }
+
+  /**
+   * Gets the order of the subscription at {@code index}.
+   *
+   * @param index the index
+   * @return the order
+   * @since 1.0.0
+   */
+  public int order(final int index) {
+    return this.orders[index];
+  }
+
+  /**
+   * Gets the index of the first subscription with an order of at least {@code order}.
+   *
+   * @param order the order
+   * @return the index, or {@link #size()} if there is no such subscription
+   * @since 1.0.0
+   */
+  public int start(final int order) {
+    int low = 0;
+    int high = this.orders.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (this.orders[mid] < order) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the index after the last subscription with an order of at most {@code order}.
+   *
+   * <p>Subscriptions with orders in {@code [a, b]} are found between {@code start(a)}, inclusive,
+   * and {@code end(b)}, exclusive.</p>
+   *
+   * @param order the order
+   * @return the index, or {@code 0} if there is no such subscription
+   * @since 1.0.0
+   */
+  public int end(final int order) {
+    return order == Integer.MAX_VALUE ? this.orders.length : this.start(order + 1);
+  }
+
+  /**
+   * Determines whether the subscription at {@code index} must be skipped if the event is cancelled.
+   *
+   * <p>This is always {@code false} when {@link #event()} is not {@link Cancellable}.</p>
+   *
+   * @param index the index
+   * @return whether the subscription must be skipped if the event is cancelled
+   * @since 1.0.0
+   */
+  public boolean skipsCancelled(final int index) {
+    final boolean @Nullable [] skipsCancelled = this.skipsCancelled;
+    return skipsCancelled != null && skipsCancelled[index];
+  }
+
+  /**
+   * Gets an unmodifiable list of the subscriptions in this plan, in dispatch order.
+   *
+   * <p>Keyed subscriptions are included, after the unkeyed subscriptions with the same order.</p>
+   *
+   * @return the subscriptions
+   * @since 1.0.0
+   */
+  public List<EventSubscription<? super E>> subscriptions() {
+    final @Nullable Index<E> index = this.index;
+    if (index == null || index.slices.isEmpty()) {
+      return this.view;
+    }
+    final List<EventSubscription<? super E>> subscriptions = new ArrayList<>(this.view);
+    for (final Slice<E> slice : index.slices.values()) {
+      subscriptions.addAll(Arrays.asList(slice.subscriptions));
+    }
+    subscriptions.sort(ORDER_COMPARATOR);
+    return Collections.unmodifiableList(subscriptions);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", this.getClass().getSimpleName() + "[", "]")
+      .add("event=" + this.event.get())
+      .add("subscriptions=" + this.subscriptions())
+      .toString();
+  }
+
+  // key -> keyed subscriptions, shared by the plans derived from each other
+  private static final class Index<E> {
+    final Function<? super E, ?> key;
+    final ConcurrentMap<Object, Slice<E>> slices = new ConcurrentHashMap<>();
+
+    Index(final Function<? super E, ?> key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Slice<E> {
+    final EventSubscription<? super E>[] subscriptions;
+    // replaced, never modified - a stale read only costs another merge
+    private @Nullable Merged<E> merged;
+
+    Slice(final EventSubscription<? super E>[] subscriptions) {
+      this.subscriptions = subscriptions;
+    }
+
+    DispatchPlan<E> merged(final DispatchPlan<E> plan) {
+      final @Nullable Merged<E> merged = this.merged;
+      if (merged != null && merged.unkeyed == plan.subscriptions) {
+        return merged.plan;
+      }
+      final DispatchPlan<E> result = new DispatchPlan<>(plan.event, merge(plan.subscriptions, plan.orders, this.subscriptions), null);
+      this.merged = new Merged<>(plan.subscriptions, result);
+      return result;
+    }
+  }
+
+  private static final class Merged<E> {
+    final EventSubscription<? super E>[] unkeyed;
+    final DispatchPlan<E> plan;
+
+    Merged(final EventSubscription<? super E>[] unkeyed, final DispatchPlan<E> plan) {
+      this.unkeyed = unkeyed;
+      this.plan = plan;
+    }
+  }
+}
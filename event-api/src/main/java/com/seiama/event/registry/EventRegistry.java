@@ -26,7 +26,10 @@ package com.seiama.event.registry;
 import com.seiama.event.EventConfig;
 import com.seiama.event.EventSubscriber;
 import com.seiama.event.EventSubscription;
+import com.seiama.event.Subscribe;
+import java.lang.invoke.MethodHandles;
 import java.util.List;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import org.jspecify.annotations.NullMarked;
 
@@ -56,7 +59,7 @@ public interface EventRegistry<E> {
    * @since 1.0.0
    */
   default boolean subscribed(final Class<? extends E> event) {
-    return !this.subscriptions(event).isEmpty();
+    return !this.plan(event).isEmpty();
   }
 
   /**
@@ -82,6 +85,89 @@ public interface EventRegistry<E> {
    */
   <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber);
 
+  /**
+   * Registers the given {@code subscriber} to receive events on behalf of {@code owner}, using the default {@link EventConfig configuration}.
+   *
+   * @param owner the owner
+   * @param event the event type
+   * @param subscriber the subscriber
+   * @param <T> the event type
+   * @return the subscription
+   * @see #unsubscribeAll(Object)
+   * @since 1.0.0
+   */
+  default <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe(owner, event, EventConfig.defaults(), subscriber);
+  }
+
+  /**
+   * Registers the given {@code subscriber} to receive events on behalf of {@code owner}.
+   *
+   * @param owner the owner
+   * @param event the event type
+   * @param config the event configuration
+   * @param subscriber the subscriber
+   * @param <T> the event type
+   * @return the subscription
+   * @see #unsubscribeAll(Object)
+   * @since 1.0.0
+   */
+  <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber);
+
+  /**
+   * Registers the given {@code subscriber} to receive events with the given {@code key}.
+   *
+   * <p>Keys are extracted from events by the function {@link #key(Class, Function) registered} for the nearest
+   * ancestor of their type, and compared using {@link Object#equals(Object)}. Events are dispatched to the
+   * subscribers for their key and to unkeyed subscribers together, in {@link EventConfig#order() order}, without
+   * visiting subscribers for other keys.</p>
+   *
+   * @param event the event type
+   * @param key the key
+   * @param config the event configuration
+   * @param subscriber the subscriber
+   * @param <T> the event type
+   * @return the subscription
+   * @throws IllegalArgumentException if no key function has been registered for {@code event} or its supertypes
+   * @since 1.0.0
+   */
+  <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber);
+
+  /**
+   * Registers the function extracting the key of events of type {@code event} and its subtypes.
+   *
+   * <p>A subtype may register its own key function, which is then used for events of that subtype instead.
+   * Events for which {@code key} returns {@code null} are only dispatched to unkeyed subscribers.</p>
+   *
+   * @param event the event type
+   * @param key the key function
+   * @param <T> the event type
+   * @throws IllegalArgumentException if a key function has already been registered for {@code event}
+   * @see #subscribeKeyed(Class, Object, EventConfig, EventSubscriber)
+   * @since 1.0.0
+   */
+  <T extends E> void key(final Class<T> event, final Function<? super T, ?> key);
+
+  /**
+   * Registers every method of {@code listener} annotated with {@link Subscribe}.
+   *
+   * <p>Each annotated method is subscribed to the type of its parameter, with an {@link EventConfig configuration}
+   * built from its annotation. Methods are called through generated subscribers rather than reflection, which
+   * requires {@code lookup} to have access to the listener's class - {@code MethodHandles.lookup()} called from
+   * within the listener's module is sufficient. Scanning is performed once for each listener class.</p>
+   *
+   * <p>The subscriptions are owned by {@code listener}, and can be removed with {@link #unsubscribeAll(Object)}.</p>
+   *
+   * @param listener the listener
+   * @param lookup a lookup with access to the class of {@code listener}
+   * @return the subscriptions, one for each annotated method
+   * @throws IllegalArgumentException if an annotated method is invalid, or cannot be accessed using {@code lookup}
+   * @since 1.0.0
+   */
+  default List<EventSubscription<? extends E>> subscribe(final Object listener, final MethodHandles.Lookup lookup) {
+    return Listeners.subscribe(this, listener, lookup);
+  }
+
   /**
    * Removes subscriptions matching {@code predicate}.
    *
@@ -90,6 +176,28 @@ public interface EventRegistry<E> {
    */
   void unsubscribeIf(final Predicate<EventSubscription<? super E>> predicate);
 
+  /**
+   * Removes all subscriptions owned by {@code owner}.
+   *
+   * <p>Owners are compared using {@link Object#equals(Object)}.</p>
+   *
+   * @param owner the owner
+   * @see EventSubscription#owner()
+   * @since 1.0.0
+   */
+  void unsubscribeAll(final Object owner);
+
+  /**
+   * Creates a transaction for subscribing and unsubscribing in bulk.
+   *
+   * <p>Changes staged in the transaction are not visible until it is {@link Transaction#commit() committed},
+   * at which point they are all published at once - events posted concurrently observe either none or all of them.</p>
+   *
+   * @return a new transaction
+   * @since 1.0.0
+   */
+  Transaction<E> transaction();
+
   /**
    * Gets an unmodifiable list containing all subscriptions currently registered for events of type {@code event}.
    *
@@ -97,4 +205,118 @@ public interface EventRegistry<E> {
    * @since 1.0.0
    */
   List<EventSubscription<? super E>> subscriptions(final Class<? extends E> event);
+
+  /**
+   * Gets the version of the subscriptions in this registry.
+   *
+   * <p>The version changes whenever a subscription is added or removed, so a {@link #plan(Class) plan} may be
+   * kept for as long as the version that was read before getting it is unchanged.</p>
+   *
+   * @return the version
+   * @since 1.0.0
+   */
+  long version();
+
+  /**
+   * Gets a plan for dispatching events of exactly type {@code event}.
+   *
+   * @param event the event type
+   * @return a dispatch plan for events of type {@code event}
+   * @since 1.0.0
+   */
+  default DispatchPlan<E> plan(final Class<? extends E> event) {
+    return DispatchPlan.of(event, this.subscriptions(event));
+  }
+
+  /**
+   * Creates an immutable snapshot of the subscriptions currently registered.
+   *
+   * <p>The snapshot bakes the dispatch plans of every event type known to this registry up front, and looks
+   * them up without locking. Later changes to this registry are not visible in the snapshot.</p>
+   *
+   * @return a frozen registry
+   * @since 1.0.0
+   */
+  FrozenEventRegistry<E> freeze();
+
+  /**
+   * A set of subscription changes that are applied to a registry at once.
+   *
+   * <p>A transaction is not thread-safe, and can only be committed once. A transaction that is never committed
+   * has no effect.</p>
+   *
+   * @param <E> the base event type
+   * @see EventRegistry#transaction()
+   * @since 1.0.0
+   */
+  interface Transaction<E> {
+    /**
+     * Stages a subscription of the given {@code subscriber}, using the default {@link EventConfig configuration}.
+     *
+     * @param event the event type
+     * @param subscriber the subscriber
+     * @param <T> the event type
+     * @return the subscription, which is inactive until this transaction is committed
+     * @since 1.0.0
+     */
+    default <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventSubscriber<? super T> subscriber) {
+      return this.subscribe(event, EventConfig.defaults(), subscriber);
+    }
+
+    /**
+     * Stages a subscription of the given {@code subscriber}.
+     *
+     * @param event the event type
+     * @param config the event configuration
+     * @param subscriber the subscriber
+     * @param <T> the event type
+     * @return the subscription, which is inactive until this transaction is committed
+     * @since 1.0.0
+     */
+    <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber);
+
+    /**
+     * Stages a subscription of the given {@code subscriber} on behalf of {@code owner}.
+     *
+     * @param owner the owner
+     * @param event the event type
+     * @param config the event configuration
+     * @param subscriber the subscriber
+     * @param <T> the event type
+     * @return the subscription, which is inactive until this transaction is committed
+     * @since 1.0.0
+     */
+    <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber);
+
+    /**
+     * Stages a subscription of the given {@code subscriber} to events with the given {@code key}.
+     *
+     * @param event the event type
+     * @param key the key
+     * @param config the event configuration
+     * @param subscriber the subscriber
+     * @param <T> the event type
+     * @return the subscription, which is inactive until this transaction is committed
+     * @throws IllegalArgumentException if no key function has been registered for {@code event} or its supertypes
+     * @see EventRegistry#subscribeKeyed(Class, Object, EventConfig, EventSubscriber)
+     * @since 1.0.0
+     */
+    <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber);
+
+    /**
+     * Stages the removal of {@code subscription}.
+     *
+     * @param subscription the subscription
+     * @since 1.0.0
+     */
+    void unsubscribe(final EventSubscription<? extends E> subscription);
+
+    /**
+     * Applies all staged changes.
+     *
+     * @throws IllegalStateException if this transaction has already been committed
+     * @since 1.0.0
+     */
+    void commit();
+  }
 }
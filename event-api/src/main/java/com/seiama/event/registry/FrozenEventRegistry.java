@@ -0,0 +1,177 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.registry;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.EventSubscriber;
+import com.seiama.event.EventSubscription;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An immutable snapshot of an event registry.
+ *
+ * <p>The {@link DispatchPlan dispatch plans} of every event type known to the registry it was
+ * {@link EventRegistry#freeze() frozen} from are baked up front, and plans are looked up by the identity of the
+ * event type through a {@link ClassValue}, without locking. Plans for event types that were not known are baked
+ * from the snapshot on their first lookup. The {@link #version() version} never changes, so posters keep their
+ * plans forever.</p>
+ *
+ * <p>As in the registry it was frozen from, baked plans do not keep their event types loaded, and subscribers
+ * referencing this registry do not keep it alive.</p>
+ *
+ * <p>All mutations throw an {@link UnsupportedOperationException}. The snapshot keeps the subscriptions it was
+ * created with, even if they are later {@link EventSubscription#dispose() disposed} in the original registry.</p>
+ *
+ * @param <E> the base event type
+ * @since 1.0.0
+ */
+@NullMarked
+public final class FrozenEventRegistry<E> implements EventRegistry<E> {
+  private final Class<E> type;
+  private final Map<Class<?>, List<EventSubscription<? super E>>> subscriptions;
+  private final Map<Class<?>, Function<?, ?>> keys;
+  private final long version;
+  private final BakedPlan.Cache<E> plans = new BakedPlan.Cache<>();
+
+  FrozenEventRegistry(
+    final Class<E> type,
+    final Map<Class<?>, List<EventSubscription<? super E>>> subscriptions,
+    final Map<Class<?>, Function<?, ?>> keys,
+    final Collection<? extends Class<? extends E>> known,
+    final long version
+  ) {
+    this.type = type;
+    this.subscriptions = Map.copyOf(subscriptions);
+    this.keys = Map.copyOf(keys);
+    this.version = version;
+    for (final Class<? extends E> event : known) {
+      this.plan(event);
+    }
+  }
+
+  @Override
+  public Class<E> type() {
+    return this.type;
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    throw unsupported();
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    throw unsupported();
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    throw unsupported();
+  }
+
+  @Override
+  public <T extends E> void key(final Class<T> event, final Function<? super T, ?> key) {
+    throw unsupported();
+  }
+
+  @Override
+  public void unsubscribeIf(final Predicate<EventSubscription<? super E>> predicate) {
+    throw unsupported();
+  }
+
+  @Override
+  public void unsubscribeAll(final Object owner) {
+    throw unsupported();
+  }
+
+  @Override
+  public Transaction<E> transaction() {
+    throw unsupported();
+  }
+
+  @Override
+  public List<EventSubscription<? super E>> subscriptions(final Class<? extends E> event) {
+    return this.plan(event).subscriptions();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This is the version of the original registry when it was frozen, and never changes.</p>
+   *
+   * @return the version
+   * @since 1.0.0
+   */
+  @Override
+  public long version() {
+    return this.version;
+  }
+
+  @Override
+  public DispatchPlan<E> plan(final Class<? extends E> event) {
+    final BakedPlan<E> baked = this.plans.get(event);
+    @Nullable DispatchPlan<E> plan = baked.plan;
+    if (plan == null) {
+      // the snapshot never changes, so racing lookups bake equal plans
+      plan = this.computePlan(event);
+      baked.plan = plan;
+    }
+    return plan;
+  }
+
+  /**
+   * Returns this registry, as it is already frozen.
+   *
+   * @return this registry
+   * @since 1.0.0
+   */
+  @Override
+  public FrozenEventRegistry<E> freeze() {
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  private DispatchPlan<E> computePlan(final Class<? extends E> event) {
+    final List<EventSubscription<? super E>> subscriptions = new ArrayList<>();
+    @Nullable Function<? super E, ?> key = null;
+    for (final Class<?> type : Internals.ancestors(event, this.type)) {
+      subscriptions.addAll(this.subscriptions.getOrDefault(type, List.of()));
+      if (key == null) {
+        key = (Function<? super E, ?>) this.keys.get(type);
+      }
+    }
+    return DispatchPlan.of(event, subscriptions, key);
+  }
+
+  private static UnsupportedOperationException unsupported() {
+    return new UnsupportedOperationException("A frozen registry cannot be modified");
+  }
+}
@@ -24,29 +24,63 @@
 package com.seiama.event.registry;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.jspecify.annotations.NullMarked;
 
 // based on code from seiama/commons
 @NullMarked
 final class Internals {
+  // base type -> (event type -> ancestors of the event type that are subtypes of the base type)
+  private static final ClassValue<ClassValue<List<Class<?>>>> ANCESTORS = new ClassValue<>() {
+    @Override
+    protected ClassValue<List<Class<?>>> computeValue(final Class<?> base) {
+      return new ClassValue<>() {
+        @Override
+        protected List<Class<?>> computeValue(final Class<?> type) {
+          final List<Class<?>> ancestors = new ArrayList<>(ancestors(type));
+          ancestors.removeIf(ancestor -> !base.isAssignableFrom(ancestor));
+          return List.copyOf(ancestors);
+        }
+      };
+    }
+  };
+
   private Internals() {
   }
 
+  /**
+   * Gets the ancestors of {@code type} that are subtypes of {@code base}, including {@code type} itself.
+   *
+   * <p>Results are cached for as long as {@code type} is loaded, and shared by all callers with the same
+   * {@code base}.</p>
+   *
+   * @param type the type
+   * @param base the base type
+   * @return an unmodifiable list of ancestors, starting with {@code type}
+   */
+  static List<Class<?>> ancestors(final Class<?> type, final Class<?> base) {
+    return ANCESTORS.get(base).get(type);
+  }
+
   @SuppressWarnings("unchecked")
   static <T> List<Class<? super T>> ancestors(final Class<T> type) {
     final List<Class<? super T>> types = new ArrayList<>();
+    // we have a list because we want to preserve order, and a set because we don't want duplicates
+    final Set<Class<?>> seen = new HashSet<>();
     types.add(type);
+    seen.add(type);
     for (int i = 0; i < types.size(); i++) {
       final Class<?> next = types.get(i);
       final Class<?> superclass = next.getSuperclass();
       if (superclass != null) {
         types.add((Class<? super T>) superclass);
+        seen.add(superclass);
       }
       final Class<?>[] interfaces = next.getInterfaces();
       for (final Class<?> iface : interfaces) {
-        // we have a list because we want to preserve order, but we don't want duplicates
-        if (!types.contains(iface)) {
+        if (seen.add(iface)) {
           types.add((Class<? super T>) iface);
         }
       }
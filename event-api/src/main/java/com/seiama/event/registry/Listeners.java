@@ -0,0 +1,196 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.registry;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.EventSubscriber;
+import com.seiama.event.EventSubscription;
+import com.seiama.event.Subscribe;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+// scans listener classes for @Subscribe methods, and spins an EventSubscriber factory for each of them
+@NullMarked
+final class Listeners {
+  private static final MethodType SUBSCRIBER = MethodType.methodType(void.class, Object.class);
+  private static final MethodType FACTORY = MethodType.methodType(EventSubscriber.class, Object.class);
+  private static final ClassValue<Listener> LISTENERS = new ClassValue<>() {
+    @Override
+    protected Listener computeValue(final Class<?> type) {
+      return new Listener(type);
+    }
+  };
+
+  private Listeners() {
+  }
+
+  static <E> List<EventSubscription<? extends E>> subscribe(final EventRegistry<E> registry, final Object listener, final MethodHandles.Lookup lookup) {
+    requireNonNull(listener, "listener");
+    requireNonNull(lookup, "lookup");
+    final List<Binding> bindings = LISTENERS.get(listener.getClass()).bindings(lookup);
+    for (final Binding binding : bindings) {
+      if (!registry.type().isAssignableFrom(binding.event)) {
+        throw new IllegalArgumentException(binding.method + " subscribes to " + binding.event + ", which is not a subtype of " + registry.type());
+      }
+    }
+    // a single transaction, so a listener is subscribed atomically and plans are baked once
+    final EventRegistry.Transaction<E> transaction = registry.transaction();
+    final List<EventSubscription<? extends E>> subscriptions = new ArrayList<>(bindings.size());
+    for (final Binding binding : bindings) {
+      subscriptions.add(subscribe(transaction, listener, binding.event.asSubclass(registry.type()), binding.config, binding.subscriber(listener)));
+    }
+    transaction.commit();
+    return subscriptions;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E, T extends E> EventSubscription<T> subscribe(final EventRegistry.Transaction<E> transaction, final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<?> subscriber) {
+    return transaction.subscribe(owner, event, config, (EventSubscriber<? super T>) subscriber);
+  }
+
+  private static final class Listener {
+    private final Class<?> type;
+    private volatile @Nullable List<Binding> bindings;
+
+    Listener(final Class<?> type) {
+      this.type = type;
+    }
+
+    List<Binding> bindings(final MethodHandles.Lookup lookup) {
+      @Nullable List<Binding> bindings = this.bindings;
+      if (bindings == null) {
+        synchronized (this) {
+          bindings = this.bindings;
+          if (bindings == null) {
+            bindings = this.scan(lookup);
+            this.bindings = bindings;
+            return bindings;
+          }
+        }
+      }
+      // created with the lookup of an earlier caller, which must not grant this caller any access it lacks
+      for (final Binding binding : bindings) {
+        binding.checkAccess(lookup);
+      }
+      return bindings;
+    }
+
+    private List<Binding> scan(final MethodHandles.Lookup lookup) {
+      final List<Binding> bindings = new ArrayList<>();
+      final Set<String> seen = new HashSet<>();
+      for (@Nullable Class<?> type = this.type; type != null && type != Object.class; type = type.getSuperclass()) {
+        for (final Method method : type.getDeclaredMethods()) {
+          final @Nullable Subscribe subscribe = method.getAnnotation(Subscribe.class);
+          if (subscribe == null || method.isBridge() || method.isSynthetic()) {
+            continue;
+          }
+          // an overridden method is only registered once, as the override is what gets invoked
+          if (!Modifier.isPrivate(method.getModifiers()) && !seen.add(method.getName() + Arrays.toString(method.getParameterTypes()))) {
+            continue;
+          }
+          bindings.add(Binding.create(method, subscribe, lookup));
+        }
+      }
+      return List.copyOf(bindings);
+    }
+  }
+
+  private static final class Binding {
+    final Method method;
+    final Class<?> event;
+    final EventConfig config;
+    private final MethodHandle factory;
+
+    private Binding(final Method method, final Class<?> event, final EventConfig config, final MethodHandle factory) {
+      this.method = method;
+      this.event = event;
+      this.config = config;
+      this.factory = factory;
+    }
+
+    static Binding create(final Method method, final Subscribe subscribe, final MethodHandles.Lookup lookup) {
+      if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() != void.class || method.getParameterCount() != 1) {
+        throw new IllegalArgumentException(method + " must be a non-static method returning void with a single event parameter");
+      }
+      final Class<?> owner = method.getDeclaringClass();
+      final Class<?> event = method.getParameterTypes()[0];
+      final EventConfig config = EventConfig.of(subscribe.order(), subscribe.acceptsCancelled(), subscribe.exact());
+      try {
+        final MethodHandles.Lookup local = local(owner, lookup);
+        final MethodHandle target = local.unreflect(method);
+        final MethodHandle factory = LambdaMetafactory.metafactory(
+          local,
+          "on",
+          MethodType.methodType(EventSubscriber.class, owner),
+          SUBSCRIBER,
+          target,
+          MethodType.methodType(void.class, event)
+        ).getTarget();
+        return new Binding(method, event, config, factory.asType(FACTORY));
+      } catch (final ReflectiveOperationException | LambdaConversionException e) {
+        throw new IllegalArgumentException("Could not create a subscriber for " + method + " using " + lookup, e);
+      }
+    }
+
+    // spin the subscriber in the listener's own nest, so that it calls the method directly
+    private static MethodHandles.Lookup local(final Class<?> owner, final MethodHandles.Lookup lookup) throws IllegalAccessException {
+      return lookup.lookupClass() == owner ? lookup : MethodHandles.privateLookupIn(owner, lookup);
+    }
+
+    // the access creating this binding required, without spinning the subscriber again
+    void checkAccess(final MethodHandles.Lookup lookup) {
+      try {
+        final MethodHandles.Lookup local = local(this.method.getDeclaringClass(), lookup);
+        if (!local.hasFullPrivilegeAccess()) {
+          throw new IllegalAccessException(local + " does not have full privilege access");
+        }
+        local.unreflect(this.method);
+      } catch (final IllegalAccessException e) {
+        throw new IllegalArgumentException("Could not create a subscriber for " + this.method + " using " + lookup, e);
+      }
+    }
+
+    EventSubscriber<?> subscriber(final Object listener) {
+      try {
+        return (EventSubscriber<?>) this.factory.invokeExact(listener);
+      } catch (final Throwable t) {
+        throw new IllegalStateException("Could not create a subscriber for " + this.method, t);
+      }
+    }
+  }
+}
@@ -26,14 +26,20 @@ package com.seiama.event.registry;
 import com.seiama.event.EventConfig;
 import com.seiama.event.EventSubscriber;
 import com.seiama.event.EventSubscription;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
@@ -43,17 +49,27 @@ import static java.util.Objects.requireNonNull;
 /**
  * A simple implementation of an event registry.
  *
+ * <p>Baked {@link DispatchPlan dispatch plans} are looked up through a {@link ClassValue}, so lookups
+ * through {@link #plan(Class)}, {@link #subscriptions(Class)} and {@link #subscribed(Class)} do not take
+ * a lock once an event type has been baked. Only mutations, and the first lookup of an event type, synchronize.
+ * Baking an event type does not keep it, or its class loader, from being unloaded, as long as no subscriber of this
+ * registry references it, and subscribers referencing this registry do not keep it alive either.</p>
+ *
+ * <p>Mutations only touch the baked plans of event types that have the changed event type as an
+ * ancestor. A new subscription is merged into those plans in place of a full re-bake, and a
+ * {@link #transaction() transaction} re-bakes each affected plan once for all of its changes.</p>
+ *
  * @param <E> the base event type
  * @since 1.0.0
  */
 @NullMarked
 public class SimpleEventRegistry<E> implements EventRegistry<E> {
-  private static final Comparator<EventSubscription<?>> ORDER_COMPARATOR = Comparator.comparingInt(subscription -> subscription.config().order());
-
-  private final Map<Class<? extends E>, Collection<? extends Class<?>>> classes = new HashMap<>();
-
   private final Map<Class<? extends E>, List<EventSubscription<? super E>>> unbaked = new HashMap<>();
-  private final Map<Class<? extends E>, List<EventSubscription<? super E>>> baked = new HashMap<>();
+  // plans are only written while holding the lock
+  private final BakedPlan.Cache<E> baked = new BakedPlan.Cache<>();
+  private final Map<Object, List<EventSubscription<? super E>>> owned = new HashMap<>();
+  private final Map<Class<?>, Function<?, ?>> keys = new HashMap<>();
+  private final AtomicLong version = new AtomicLong();
 
   private final Object lock = new Object();
 
@@ -76,52 +92,221 @@ public class SimpleEventRegistry<E> implements EventRegistry<E> {
 
   @Override
   public <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe0(null, event, null, config, subscriber);
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe0(null, event, requireNonNull(key, "key"), config, subscriber);
+  }
+
+  @Override
+  public <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    return this.subscribe0(requireNonNull(owner, "owner"), event, null, config, subscriber);
+  }
+
+  private <T extends E> EventSubscription<T> subscribe0(final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
     requireNonNull(event, "event");
     requireNonNull(config, "config");
     requireNonNull(subscriber, "subscriber");
-    final EventSubscription<T> subscription = new EventSubscriptionImpl<>(event, config, subscriber);
+    final EventSubscription<T> subscription = new EventSubscriptionImpl<>(this, owner, event, key, config, subscriber);
     synchronized (this.lock) {
-      final List<EventSubscription<? super T>> subscriptions = yayGenerics(this.unbaked.computeIfAbsent(event, key -> new ArrayList<>()));
-      subscriptions.add(subscription);
-      this.baked.clear();
+      if (key != null) {
+        this.checkKeyed(event);
+      }
+      this.attach(subscription);
+      this.rebake(List.of(event), (type, plan) -> plan.with(subscription, this.classes(type)));
     }
     return subscription;
   }
 
+  @Override
+  public <T extends E> void key(final Class<T> event, final Function<? super T, ?> key) {
+    requireNonNull(event, "event");
+    requireNonNull(key, "key");
+    synchronized (this.lock) {
+      if (this.keys.putIfAbsent(event, key) != null) {
+        throw new IllegalArgumentException("A key function has already been registered for " + event);
+      }
+      this.rebake(List.of(event), (type, plan) -> this.computePlan(type));
+    }
+  }
+
+  // key functions are never removed, so the check cannot be invalidated later
+  private void checkKeyed(final Class<? extends E> event) {
+    synchronized (this.lock) {
+      if (this.key(event) == null) {
+        throw new IllegalArgumentException("No key function has been registered for " + event);
+      }
+    }
+  }
+
+  // finds the key function of the nearest ancestor of an event type - must hold the lock
+  @SuppressWarnings("unchecked")
+  private @Nullable Function<? super E, ?> key(final Class<? extends E> event) {
+    for (final Class<?> type : this.classes(event)) {
+      final @Nullable Function<?, ?> key = this.keys.get(type);
+      if (key != null) {
+        return (Function<? super E, ?>) key;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Transaction<E> transaction() {
+    return new TransactionImpl();
+  }
+
+  // adds a subscription to the unbaked and owner indexes - must hold the lock
+  private <T extends E> void attach(final EventSubscription<T> subscription) {
+    final List<EventSubscription<? super T>> subscriptions = yayGenerics(this.unbaked.computeIfAbsent(subscription.event(), key -> new ArrayList<>()));
+    subscriptions.add(subscription);
+    final @Nullable Object owner = subscription.owner();
+    if (owner != null) {
+      final List<EventSubscription<? super T>> owned = yayGenerics(this.owned.computeIfAbsent(owner, key -> new ArrayList<>()));
+      owned.add(subscription);
+    }
+  }
+
+  // removes a subscription from the unbaked and owner indexes - must hold the lock
+  private boolean detach(final EventSubscription<?> subscription) {
+    final @Nullable List<EventSubscription<? super E>> subscriptions = this.unbaked.get(subscription.event());
+    if (subscriptions != null && subscriptions.remove(subscription)) {
+      this.disown(subscription);
+      return true;
+    }
+    return false;
+  }
+
   @Override
   public void unsubscribeIf(final Predicate<EventSubscription<? super E>> predicate) {
     synchronized (this.lock) {
-      boolean removedAny = false;
-      for (final List<EventSubscription<? super E>> subscriptions : this.unbaked.values()) {
-        removedAny |= subscriptions.removeIf(predicate);
+      final Set<Class<?>> changed = new HashSet<>();
+      for (final Map.Entry<Class<? extends E>, List<EventSubscription<? super E>>> entry : this.unbaked.entrySet()) {
+        if (entry.getValue().removeIf(subscription -> predicate.test(subscription) && this.disown(subscription))) {
+          changed.add(entry.getKey());
+        }
       }
-      if (removedAny) {
-        this.baked.clear();
+      if (!changed.isEmpty()) {
+        this.rebake(changed, (type, plan) -> null);
       }
     }
   }
 
+  @Override
+  public void unsubscribeAll(final Object owner) {
+    requireNonNull(owner, "owner");
+    synchronized (this.lock) {
+      final @Nullable List<EventSubscription<? super E>> owned = this.owned.remove(owner);
+      if (owned == null) {
+        return;
+      }
+      final Map<Class<?>, Set<EventSubscription<? super E>>> removed = new HashMap<>();
+      for (final EventSubscription<? super E> subscription : owned) {
+        removed.computeIfAbsent(subscription.event(), key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(subscription);
+      }
+      for (final Map.Entry<Class<?>, Set<EventSubscription<? super E>>> entry : removed.entrySet()) {
+        final @Nullable List<EventSubscription<? super E>> subscriptions = this.unbaked.get(entry.getKey());
+        if (subscriptions != null) {
+          subscriptions.removeAll(entry.getValue());
+        }
+      }
+      this.rebake(removed.keySet(), (type, plan) -> null);
+    }
+  }
+
+  // removes a subscription from the owner index - must hold the lock
+  private boolean disown(final EventSubscription<?> subscription) {
+    final @Nullable Object owner = subscription.owner();
+    if (owner != null) {
+      final @Nullable List<EventSubscription<? super E>> owned = this.owned.get(owner);
+      if (owned != null && owned.remove(subscription) && owned.isEmpty()) {
+        this.owned.remove(owner);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public long version() {
+    return this.version.get();
+  }
+
+  @Override
+  public FrozenEventRegistry<E> freeze() {
+    synchronized (this.lock) {
+      final Map<Class<?>, List<EventSubscription<? super E>>> subscriptions = new HashMap<>();
+      this.unbaked.forEach((type, list) -> {
+        if (!list.isEmpty()) {
+          subscriptions.put(type, List.copyOf(list));
+        }
+      });
+      final Set<Class<? extends E>> known = new HashSet<>(this.unbaked.keySet());
+      // every baked event type has the base type as an ancestor
+      for (final BakedPlan<E> baked : this.baked.get(this.type).dependents()) {
+        final @Nullable Class<? extends E> event = baked.event();
+        if (event != null) {
+          known.add(event);
+        }
+      }
+      return new FrozenEventRegistry<>(this.type, subscriptions, this.keys, known, this.version.get());
+    }
+  }
+
   @Override
   public List<EventSubscription<? super E>> subscriptions(final Class<? extends E> event) {
+    return this.plan(event).subscriptions();
+  }
+
+  @Override
+  public DispatchPlan<E> plan(final Class<? extends E> event) {
+    final BakedPlan<E> baked = this.baked.get(event);
+    final @Nullable DispatchPlan<E> plan = baked.plan;
+    if (plan != null) {
+      return plan;
+    }
     synchronized (this.lock) {
-      return this.baked.computeIfAbsent(event, this::computeSubscriptions);
+      final @Nullable DispatchPlan<E> existing = baked.plan;
+      if (existing != null) {
+        return existing;
+      }
+      final DispatchPlan<E> computed = this.computePlan(event);
+      this.baked.depend(baked, this.classes(event));
+      baked.plan = computed;
+      return computed;
     }
   }
 
-  private List<EventSubscription<? super E>> computeSubscriptions(final Class<? extends E> event) {
+  // replaces the baked plan of every event type that has a changed type as an ancestor - must hold the lock
+  private void rebake(final Collection<? extends Class<?>> changed, final BiFunction<Class<? extends E>, DispatchPlan<E>, @Nullable DispatchPlan<E>> rebake) {
+    final Set<BakedPlan<E>> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (final Class<?> type : changed) {
+      affected.addAll(this.baked.get(type).dependents());
+    }
+    for (final BakedPlan<E> baked : affected) {
+      final @Nullable DispatchPlan<E> plan = baked.plan;
+      final @Nullable Class<? extends E> event = baked.event();
+      // a discarded plan is baked again on its next lookup
+      if (plan != null && event != null) {
+        baked.plan = rebake.apply(event, plan);
+      }
+    }
+    // after publishing, so that the new version is never seen with old plans
+    this.version.incrementAndGet();
+  }
+
+  private DispatchPlan<E> computePlan(final Class<? extends E> event) {
     final List<EventSubscription<? super E>> subscriptions = new ArrayList<>();
-    final Collection<? extends Class<?>> types = this.classes.computeIfAbsent(event, this::findClasses);
+    final List<? extends Class<?>> types = this.classes(event);
     for (final Class<?> type : types) {
       subscriptions.addAll(this.unbaked.getOrDefault(type, Collections.emptyList()));
     }
-    subscriptions.sort(ORDER_COMPARATOR);
-    return subscriptions;
+    return DispatchPlan.of(event, subscriptions, this.key(event));
   }
 
-  private Collection<? extends Class<?>> findClasses(final Class<?> type) {
-    final Collection<? extends Class<?>> classes = Internals.ancestors(type);
-    classes.removeIf(klass -> !this.type.isAssignableFrom(klass));
-    return classes;
+  private List<? extends Class<?>> classes(final Class<? extends E> event) {
+    return Internals.ancestors(event, this.type);
   }
 
   @SuppressWarnings("unchecked")
@@ -129,13 +314,31 @@ public class SimpleEventRegistry<E> implements EventRegistry<E> {
     return (List<U>) list;
   }
 
-  private class EventSubscriptionImpl<T extends E> implements EventSubscription<T> {
+  // disposes a subscription of this registry
+  private void dispose(final EventSubscriptionImpl<?> subscription) {
+    synchronized (this.lock) {
+      subscription.disposed = true;
+      if (this.detach(subscription)) {
+        this.rebake(List.of(subscription.event), (type, plan) -> plan.without(subscription));
+      }
+    }
+  }
+
+  private static final class EventSubscriptionImpl<T> implements EventSubscription<T> {
+    // weak, so that holding on to a subscription does not keep the registry alive
+    private final WeakReference<SimpleEventRegistry<? super T>> registry;
+    private final @Nullable Object owner;
     private final Class<T> event;
+    private final @Nullable Object key;
     private final EventConfig config;
     private final EventSubscriber<? super T> subscriber;
+    private boolean disposed; // guarded by lock
 
-    EventSubscriptionImpl(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+    EventSubscriptionImpl(final SimpleEventRegistry<? super T> registry, final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      this.registry = new WeakReference<>(registry);
+      this.owner = owner;
       this.event = event;
+      this.key = key;
       this.config = config;
       this.subscriber = subscriber;
     }
@@ -155,24 +358,109 @@ public class SimpleEventRegistry<E> implements EventRegistry<E> {
       return this.subscriber;
     }
 
+    @Override
+    public @Nullable Object owner() {
+      return this.owner;
+    }
+
+    @Override
+    public @Nullable Object key() {
+      return this.key;
+    }
+
     @Override
     public void dispose() {
-      synchronized (SimpleEventRegistry.this.lock) {
-        final @Nullable List<EventSubscription<? super T>> subscriptions = yayGenerics(SimpleEventRegistry.this.unbaked.get(this.event));
-        if (subscriptions != null) {
-          subscriptions.remove(this);
-          SimpleEventRegistry.this.baked.clear();
-        }
+      final @Nullable SimpleEventRegistry<? super T> registry = this.registry.get();
+      // a collected registry has nothing left to dispose
+      if (registry != null) {
+        registry.dispose(this);
       }
     }
 
     @Override
     public String toString() {
       return new StringJoiner(", ", this.getClass().getSimpleName() + "[", "]")
+        .add("owner=" + this.owner)
         .add("event=" + this.event)
+        .add("key=" + this.key)
         .add("config=" + this.config)
         .add("subscriber=" + this.subscriber)
         .toString();
     }
   }
+
+  private final class TransactionImpl implements Transaction<E> {
+    private final List<EventSubscriptionImpl<? extends E>> subscribed = new ArrayList<>();
+    private final List<EventSubscription<? extends E>> unsubscribed = new ArrayList<>();
+    private boolean committed;
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribe(final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      return this.stage(null, event, null, config, subscriber);
+    }
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribe(final Object owner, final Class<T> event, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      return this.stage(requireNonNull(owner, "owner"), event, null, config, subscriber);
+    }
+
+    @Override
+    public <T extends E> EventSubscription<T> subscribeKeyed(final Class<T> event, final Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      requireNonNull(event, "event");
+      requireNonNull(key, "key");
+      SimpleEventRegistry.this.checkKeyed(event);
+      return this.stage(null, event, key, config, subscriber);
+    }
+
+    private <T extends E> EventSubscription<T> stage(final @Nullable Object owner, final Class<T> event, final @Nullable Object key, final EventConfig config, final EventSubscriber<? super T> subscriber) {
+      requireNonNull(event, "event");
+      requireNonNull(config, "config");
+      requireNonNull(subscriber, "subscriber");
+      this.checkOpen();
+      final EventSubscriptionImpl<T> subscription = new EventSubscriptionImpl<>(SimpleEventRegistry.this, owner, event, key, config, subscriber);
+      this.subscribed.add(subscription);
+      return subscription;
+    }
+
+    @Override
+    public void unsubscribe(final EventSubscription<? extends E> subscription) {
+      requireNonNull(subscription, "subscription");
+      this.checkOpen();
+      // a subscription staged by this transaction is simply never attached
+      if (!this.subscribed.remove(subscription)) {
+        this.unsubscribed.add(subscription);
+      }
+    }
+
+    @Override
+    public void commit() {
+      this.checkOpen();
+      this.committed = true;
+      synchronized (SimpleEventRegistry.this.lock) {
+        final Set<Class<?>> changed = new HashSet<>();
+        for (final EventSubscription<? extends E> subscription : this.unsubscribed) {
+          if (SimpleEventRegistry.this.detach(subscription)) {
+            changed.add(subscription.event());
+          }
+        }
+        for (final EventSubscriptionImpl<? extends E> subscription : this.subscribed) {
+          // disposed before the transaction was committed
+          if (subscription.disposed) {
+            continue;
+          }
+          SimpleEventRegistry.this.attach(subscription);
+          changed.add(subscription.event());
+        }
+        if (!changed.isEmpty()) {
+          SimpleEventRegistry.this.rebake(changed, (type, plan) -> SimpleEventRegistry.this.computePlan(type));
+        }
+      }
+    }
+
+    private void checkOpen() {
+      if (this.committed) {
+        throw new IllegalStateException("Transaction has already been committed");
+      }
+    }
+  }
 }
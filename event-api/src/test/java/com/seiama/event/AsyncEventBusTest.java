@@ -0,0 +1,208 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import com.seiama.event.bus.AsyncEventBus;
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.PartitionedEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncEventBusTest {
+  private final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+  private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+  private final EventBus.EventExceptionHandler exceptions = new EventBus.EventExceptionHandler() {
+    @Override
+    public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+      AsyncEventBusTest.this.failures.add(throwable);
+    }
+  };
+
+  @Test
+  void testPostAsyncKeepsOrder() throws ExecutionException, InterruptedException, TimeoutException {
+    final AsyncEventBus<Object> bus = new AsyncEventBus<>(this.registry, this.exceptions, Executors.newSingleThreadExecutor());
+    final List<Integer> orders = new ArrayList<>();
+    final Thread caller = Thread.currentThread();
+    for (final int order : new int[]{3, 1, 2}) {
+      this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(order), event -> {
+        assertNotSame(caller, Thread.currentThread());
+        orders.add(order);
+      });
+    }
+
+    final TestEvent1 event = new TestEvent1();
+    final CompletableFuture<Object> future = bus.postAsync(event);
+    assertSame(event, future.get(10, TimeUnit.SECONDS));
+    assertEquals(List.of(1, 2, 3), orders);
+  }
+
+  @Test
+  void testFailuresReachExceptionHandler() throws ExecutionException, InterruptedException, TimeoutException {
+    final AsyncEventBus<Object> bus = new AsyncEventBus<>(this.registry, this.exceptions);
+    final IllegalStateException failure = new IllegalStateException();
+    this.registry.subscribe(TestEvent1.class, event -> {
+      throw failure;
+    });
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+
+    final TestEvent1 event = new TestEvent1();
+    bus.postAsync(event).get(10, TimeUnit.SECONDS);
+    assertEquals(List.of(failure), this.failures);
+    assertEquals(1, event.touches);
+  }
+
+  @Test
+  void testExceptionHandlerFailureReachesUncaughtExceptionHandler() throws InterruptedException {
+    final IllegalStateException failure = new IllegalStateException();
+    final EventBus.EventExceptionHandler throwing = new EventBus.EventExceptionHandler() {
+      @Override
+      public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+        throw failure;
+      }
+    };
+    this.registry.subscribe(TestEvent1.class, event -> {
+      throw new IllegalArgumentException();
+    });
+    final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+    final CountDownLatch latch = new CountDownLatch(2);
+    final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+      final Thread thread = new Thread(task);
+      thread.setUncaughtExceptionHandler((t, e) -> {
+        uncaught.add(e);
+        latch.countDown();
+      });
+      return thread;
+    });
+    try {
+      final AsyncEventBus<Object> bus = new AsyncEventBus<>(this.registry, throwing, executor);
+      bus.post(new TestEvent1());
+      bus.postAll(List.of(new TestEvent1()));
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(List.of(failure, failure), uncaught);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testPartitionedKeepsOrderPerKey() throws ExecutionException, InterruptedException, TimeoutException {
+    final int keys = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final PartitionedEventBus<Object> bus = new PartitionedEventBus<>(this.registry, this.exceptions, executor, 4);
+      bus.key(Keyed.class, Keyed::key);
+      final AtomicIntegerArray last = new AtomicIntegerArray(keys);
+      this.registry.subscribe(Keyed.class, event -> {
+        if (!last.compareAndSet(event.key(), event.value() - 1, event.value())) {
+          throw new AssertionError("out of order: " + event);
+        }
+      });
+
+      final List<Object> events = new ArrayList<>();
+      for (int value = 1; value <= 1_000; value++) {
+        for (int key = 0; key < keys; key++) {
+          events.add(new Keyed(key, value));
+        }
+      }
+      bus.postAllAsync(events).get(10, TimeUnit.SECONDS);
+      assertEquals(List.of(), this.failures);
+      for (int key = 0; key < keys; key++) {
+        assertEquals(1_000, last.get(key));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testPartitionedKeepsNoClassLoader() throws ReflectiveOperationException {
+    final PartitionedEventBus<Object> bus = new PartitionedEventBus<>(this.registry, this.exceptions, Runnable::run, 4);
+    bus.key(TestEvent1.class, event -> event.touches);
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<WeakReference<ClassLoader>> loaders = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      loaders.add(postIsolated(bus));
+    }
+    TestReachability.assertCollectable(loaders);
+    assertEquals(List.of(), this.failures);
+  }
+
+  // in a method of its own, so that nothing on the stack references the event once it returns
+  private static WeakReference<ClassLoader> postIsolated(final EventBus<Object> bus) throws ReflectiveOperationException {
+    final Class<?> type = TestReachability.isolate(TestEvent2.class);
+    final TestEvent1 event = (TestEvent1) type.getConstructor().newInstance();
+    bus.post(event);
+    assertEquals(1, event.touches);
+    return new WeakReference<>(type.getClassLoader());
+  }
+
+  @Test
+  void testBoundedQueueOverflow() {
+    final List<Integer> received = new ArrayList<>();
+    this.registry.subscribe(Integer.class, received::add);
+    for (final AsyncEventBus.OverflowPolicy overflow : List.of(AsyncEventBus.OverflowPolicy.DROP_NEWEST, AsyncEventBus.OverflowPolicy.DROP_OLDEST, AsyncEventBus.OverflowPolicy.REJECT)) {
+      received.clear();
+      final List<Runnable> tasks = new ArrayList<>(); // run by hand, so that events stay queued
+      final AsyncEventBus<Object> bus = new AsyncEventBus<>(this.registry, this.exceptions, tasks::add, 2, overflow);
+      bus.post(1);
+      bus.post(2);
+      if (overflow == AsyncEventBus.OverflowPolicy.REJECT) {
+        assertThrows(RejectedExecutionException.class, () -> bus.post(3));
+        assertTrue(bus.postAsync(3).isCompletedExceptionally());
+      } else {
+        bus.post(3);
+      }
+      assertFalse(bus.tryPost(4));
+      assertEquals(2, bus.queued());
+      tasks.forEach(Runnable::run);
+      assertEquals(0, bus.queued());
+      assertEquals(overflow == AsyncEventBus.OverflowPolicy.DROP_OLDEST ? List.of(2, 3) : List.of(1, 2), received, overflow.name());
+      assertEquals(overflow == AsyncEventBus.OverflowPolicy.REJECT ? 2 : 1, bus.dropped());
+    }
+  }
+
+  record Keyed(int key, int value) {
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import com.seiama.event.bus.CoalescingEventBus;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingEventBusTest {
+  private final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+  private final CoalescingEventBus<Object> bus = new CoalescingEventBus<>(new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE));
+
+  @Test
+  void testReplace() {
+    final List<Moved> calls = new CopyOnWriteArrayList<>();
+    this.registry.subscribe(Moved.class, calls::add);
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    this.bus.coalesce(Moved.class, Moved::entity);
+
+    this.bus.post(new Moved("a", 1));
+    this.bus.post(new Moved("b", 1));
+    this.bus.post(new Moved("a", 2));
+    this.bus.post(new Moved("a", 3));
+    final TestEvent1 uncoalesced = new TestEvent1();
+    this.bus.post(uncoalesced);
+    assertEquals(1, uncoalesced.touches);
+    assertEquals(List.of(), calls);
+    assertEquals(2, this.bus.held());
+    assertEquals(2, this.bus.coalesced());
+
+    this.bus.flush();
+    assertEquals(List.of(new Moved("a", 3), new Moved("b", 1)), calls);
+    assertEquals(0, this.bus.held());
+  }
+
+  @Test
+  void testMerge() {
+    final List<Moved> calls = new CopyOnWriteArrayList<>();
+    this.registry.subscribe(Moved.class, calls::add);
+    this.bus.coalesce(Moved.class, Moved::entity, (held, posted) -> new Moved(held.entity(), held.distance() + posted.distance()));
+
+    for (int i = 1; i <= 4; i++) {
+      this.bus.post(new Moved("a", i));
+    }
+    this.bus.close();
+    assertEquals(List.of(new Moved("a", 10)), calls);
+  }
+
+  @Test
+  void testWindow() throws InterruptedException {
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final CoalescingEventBus<Object> bus = new CoalescingEventBus<>(new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE), Duration.ofMillis(50), scheduler);
+      final List<Moved> calls = new CopyOnWriteArrayList<>();
+      final CountDownLatch latch = new CountDownLatch(1);
+      this.registry.subscribe(Moved.class, event -> {
+        calls.add(event);
+        latch.countDown();
+      });
+      bus.coalesce(Moved.class, Moved::entity);
+
+      bus.post(new Moved("a", 1));
+      bus.post(new Moved("a", 2));
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(List.of(new Moved("a", 2)), calls);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  void testPostAfterClose() {
+    final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    scheduler.setRemoveOnCancelPolicy(true);
+    try {
+      final CoalescingEventBus<Object> bus = new CoalescingEventBus<>(new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE), Duration.ofHours(1), scheduler);
+      final List<Moved> calls = new CopyOnWriteArrayList<>();
+      this.registry.subscribe(Moved.class, calls::add);
+      bus.coalesce(Moved.class, Moved::entity);
+
+      bus.post(new Moved("a", 1));
+      assertEquals(1, scheduler.getQueue().size());
+      bus.close();
+      assertEquals(List.of(new Moved("a", 1)), calls);
+      assertTrue(scheduler.getQueue().isEmpty());
+
+      bus.post(new Moved("a", 2));
+      assertEquals(List.of(new Moved("a", 1), new Moved("a", 2)), calls);
+      assertEquals(0, bus.held());
+      assertTrue(scheduler.getQueue().isEmpty());
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  void testFlushesInOrder() throws InterruptedException {
+    final List<Moved> calls = new CopyOnWriteArrayList<>();
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    this.registry.subscribe(Moved.class, event -> {
+      if (event.entity().equals("a")) {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      calls.add(event);
+    });
+    this.bus.coalesce(Moved.class, Moved::entity);
+
+    this.bus.post(new Moved("a", 1));
+    final Thread first = new Thread(this.bus::flush);
+    first.start();
+    assertTrue(entered.await(10, TimeUnit.SECONDS));
+    this.bus.post(new Moved("b", 1));
+    final Thread second = new Thread(this.bus::flush);
+    second.start();
+    // the second flush must wait for the first batch to be posted
+    while (second.getState() != Thread.State.BLOCKED && second.isAlive()) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+    first.join();
+    second.join();
+    assertEquals(List.of(new Moved("a", 1), new Moved("b", 1)), calls);
+  }
+
+  record Moved(String entity, int distance) {
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.ConcurrentEventRegistry;
+import com.seiama.event.registry.EventRegistry;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentEventRegistryTest {
+  private final EventRegistry<Object> registry = new ConcurrentEventRegistry<>(Object.class);
+  private final EventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+
+  @Test
+  void testHierarchy() {
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final TestEvent2 event = new TestEvent2();
+    this.bus.post(event); // bakes TestEvent2
+    this.registry.subscribe(TestEvent2.class, EventConfig.defaults().order(1), event2 -> event2.touches += 10);
+    this.bus.post(event);
+    assertEquals(12, event.touches);
+
+    subscription.dispose();
+    this.bus.post(event);
+    assertEquals(22, event.touches);
+    assertFalse(this.registry.subscribed(TestEvent1.class));
+  }
+
+  @Test
+  void testKeyedHierarchy() {
+    final TestEvent2 target = new TestEvent2();
+    final TestEvent2 other = new TestEvent2();
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    this.bus.post(other); // bakes TestEvent2 before its supertype is keyed
+    this.registry.key(TestEvent1.class, event -> event);
+    this.registry.subscribeKeyed(TestEvent1.class, target, EventConfig.defaults(), event -> event.touches += 10);
+    this.bus.post(target);
+    this.bus.post(other);
+    assertEquals(11, target.touches);
+    assertEquals(2, other.touches);
+  }
+
+  @Test
+  void testKeyedTransaction() {
+    final TestEvent2 target = new TestEvent2();
+    final TestEvent2 other = new TestEvent2();
+    this.registry.key(TestEvent1.class, event -> event);
+    this.bus.post(other); // bakes TestEvent2 before the transaction
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribeKeyed(TestEvent1.class, target, EventConfig.defaults(), event -> event.touches += 10);
+    transaction.subscribe(TestEvent2.class, EventConfig.defaults(), event -> event.touches++);
+    transaction.commit();
+    this.bus.post(target);
+    this.bus.post(other);
+    assertEquals(11, target.touches);
+    assertEquals(1, other.touches);
+  }
+
+  @Test
+  void testOwnersAndTransactions() {
+    final UUID owner = UUID.randomUUID();
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribe(owner, TestEvent1.class, EventConfig.defaults(), event -> event.touches++);
+    transaction.subscribe(owner, TestEvent2.class, EventConfig.defaults(), event -> event.touches++);
+    assertFalse(this.registry.subscribed(TestEvent2.class));
+    transaction.commit();
+    assertEquals(2, this.registry.subscriptions(TestEvent2.class).size());
+
+    this.registry.unsubscribeAll(owner);
+    assertFalse(this.registry.subscribed(TestEvent2.class));
+  }
+
+  @Test
+  void testDisposeBeforeCommit() {
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribe(TestEvent1.class, event -> event.touches++).dispose();
+    transaction.commit();
+    assertFalse(this.registry.subscribed(TestEvent1.class));
+
+    final TestEvent1 event = new TestEvent1();
+    this.bus.post(event);
+    assertEquals(0, event.touches);
+  }
+
+  @Test
+  void testUnsubscribeIfThrowing() {
+    final EventSubscription<TestEvent1> first = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final EventSubscription<TestEvent1> second = this.registry.subscribe(TestEvent1.class, event -> event.touches += 10);
+    assertThrows(IllegalStateException.class, () -> this.registry.unsubscribeIf(subscription -> {
+      if (second.equals(subscription)) {
+        throw new IllegalStateException();
+      }
+      return true;
+    }));
+    final TestEvent1 event = new TestEvent1();
+    this.bus.post(event);
+    assertEquals(11, event.touches);
+
+    first.dispose();
+    this.bus.post(event);
+    assertEquals(21, event.touches);
+  }
+
+  @Test
+  void testDisposeRacingCommit() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int i = 0; i < 5_000; i++) {
+        final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+        final EventSubscription<TestEvent1> subscription = transaction.subscribe(TestEvent1.class, event -> event.touches++);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Future<?> dispose = executor.submit(() -> {
+          start.await();
+          subscription.dispose();
+          return null;
+        });
+        start.countDown();
+        transaction.commit();
+        dispose.get();
+        assertFalse(this.registry.subscribed(TestEvent1.class));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testSubscriberReferencingBusKeepsNoRegistry() {
+    final List<WeakReference<EventRegistry<Object>>> registries = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      registries.add(bakeReferencingBus());
+    }
+    TestReachability.assertCollectable(registries);
+  }
+
+  // in a method of its own, so that nothing on the stack references the registry once it returns
+  private static WeakReference<EventRegistry<Object>> bakeReferencingBus() {
+    final EventRegistry<Object> registry = new ConcurrentEventRegistry<>(Object.class);
+    final EventBus<Object> bus = new SimpleEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE);
+    registry.subscribe(TestEvent2.class, event -> bus.post(new TestEvent1()));
+    bus.post(new TestEvent2());
+    return new WeakReference<>(registry);
+  }
+
+  @Test
+  void testBakingKeepsNoClassLoader() throws ReflectiveOperationException {
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<WeakReference<ClassLoader>> loaders = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      loaders.add(this.postIsolated());
+    }
+    TestReachability.assertCollectable(loaders);
+  }
+
+  // in a method of its own, so that nothing on the stack references the event once it returns
+  private WeakReference<ClassLoader> postIsolated() throws ReflectiveOperationException {
+    final Class<?> type = TestReachability.isolate(TestEvent2.class);
+    final TestEvent1 event = (TestEvent1) type.getConstructor().newInstance();
+    this.bus.post(event);
+    assertEquals(1, event.touches);
+    assertEquals(1, this.registry.subscriptions(type.asSubclass(TestEvent1.class)).size());
+    return new WeakReference<>(type.getClassLoader());
+  }
+
+  @Test
+  void testConcurrentChurn() throws Exception {
+    final EventSubscription<TestEvent1> stable = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final Class<? extends TestEvent1> event = thread % 2 == 0 ? TestEvent1.class : TestEvent2.class;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 2_000; i++) {
+            this.registry.subscribe(event, e -> { }).dispose();
+            this.bus.post(new TestEvent2());
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    // every churned subscription is gone from every baked plan
+    assertEquals(List.of(stable), this.registry.subscriptions(TestEvent2.class));
+    assertTrue(this.registry.subscribed(TestEvent1.class));
+  }
+}
@@ -24,14 +24,41 @@
 package com.seiama.event;
 
 import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.EventMetrics;
+import com.seiama.event.bus.EventPool;
+import com.seiama.event.bus.EventQuarantine;
+import com.seiama.event.bus.Poster;
 import com.seiama.event.bus.SimpleEventBus;
 import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.FrozenEventRegistry;
 import com.seiama.event.registry.SimpleEventRegistry;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class EventTest {
@@ -104,6 +131,118 @@ class EventTest {
     assertEquals(0, event2.touches);
   }
 
+  @Test
+  void testOrder() {
+    final StringBuilder posted = new StringBuilder();
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1), event -> posted.append('b'));
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(-1), event -> posted.append('a'));
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1), event -> posted.append('c'));
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(Integer.MAX_VALUE), event -> posted.append('d'));
+
+    final TestEvent1 event = new TestEvent1();
+    this.bus.post(event);
+    assertEquals("abcd", posted.toString());
+
+    posted.setLength(0);
+    this.bus.post(event, OptionalInt.of(1));
+    this.bus.post(event, OptionalInt.of(0));
+    this.bus.post(event, OptionalInt.of(Integer.MAX_VALUE));
+    assertEquals("bcd", posted.toString());
+  }
+
+  @Test
+  void testPostAll() {
+    final StringBuilder posted = new StringBuilder();
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1), event -> posted.append('b').append(event.touches));
+    this.registry.subscribe(TestEvent1.class, event -> posted.append('a').append(event.touches++));
+    this.registry.subscribe(TestEvent2.class, EventConfig.defaults().acceptsCancelled(false), event -> posted.append('c').append(event.touches));
+
+    final TestEvent1 event1 = new TestEvent1();
+    final TestEvent2 event2 = new TestEvent2();
+    final TestEvent2 event3 = new TestEvent2();
+    event3.touches = 5;
+    event3.cancelled(true);
+    this.bus.postAll(List.of(event1, event2, event3));
+    assertEquals("a0b1c0a0a5b1b6", posted.toString());
+  }
+
+  @Test
+  void testListener() {
+    final TestListener listener = new TestListener();
+    final List<EventSubscription<?>> subscriptions = List.copyOf(this.registry.subscribe(listener, MethodHandles.lookup()));
+    assertEquals(3, subscriptions.size());
+
+    this.bus.post(new TestEvent2());
+    assertEquals("exactuncancelledlate", listener.posted.toString());
+
+    listener.posted.setLength(0);
+    final TestEvent1 event = new TestEvent1();
+    event.cancelled(true);
+    this.bus.post(event);
+    assertEquals("late", listener.posted.toString());
+  }
+
+  @Test
+  void testListenerChecksEveryLookup() {
+    this.registry.subscribe(new TestListener(), MethodHandles.lookup());
+    final TestListener listener = new TestListener();
+    // the bindings are cached by now, which must not hand them out to a lookup without access
+    assertThrows(IllegalArgumentException.class, () -> this.registry.subscribe(listener, MethodHandles.publicLookup()));
+    assertThrows(IllegalArgumentException.class, () -> this.registry.subscribe(listener, MethodHandles.lookup().dropLookupMode(MethodHandles.Lookup.PRIVATE)));
+    this.bus.post(new TestEvent2());
+    assertEquals("", listener.posted.toString());
+  }
+
+  @Test
+  void testMetrics() {
+    final EventMetrics metrics = new EventMetrics();
+    final EventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE, metrics);
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.cancelled(event.touches++ > 0));
+
+    final TestEvent1 event = new TestEvent1();
+    bus.post(event);
+    bus.post(event);
+    bus.post(new TestEvent2());
+
+    final EventMetrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(new EventMetrics.EventStats(2, 1), snapshot.events().get(TestEvent1.class));
+    assertEquals(new EventMetrics.EventStats(1, 0), snapshot.events().get(TestEvent2.class));
+    assertEquals(3, snapshot.subscriptions().get(subscription).invocations());
+    assertEquals(0, snapshot.subscriptions().get(subscription).failures());
+
+    metrics.reset();
+    assertTrue(metrics.snapshot().events().isEmpty());
+  }
+
+  @Test
+  void testPlanExcludesExactSupertypeSubscriptions() {
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().exact(true), event -> event.touches++);
+
+    assertEquals(1, this.registry.plan(TestEvent1.class).size());
+    assertTrue(this.registry.plan(TestEvent2.class).isEmpty());
+    assertFalse(this.registry.subscribed(TestEvent2.class));
+  }
+
+  @Test
+  void testIncrementalBakeMatchesFullBake() {
+    final EventRegistry<Object> fresh = new SimpleEventRegistry<>(Object.class);
+    this.registry.plan(TestEvent2.class); // bake before subscribing, so that subscriptions are merged in
+    final int[] orders = {1, 0, 0, 1, 0, 0, -1};
+    for (int i = 0; i < orders.length; i++) {
+      final Class<? extends TestEvent1> type = i % 2 == 0 ? TestEvent1.class : TestEvent2.class;
+      final EventSubscriber<Object> subscriber = event -> { };
+      this.registry.subscribe(type, EventConfig.defaults().order(orders[i]), subscriber);
+      fresh.subscribe(type, EventConfig.defaults().order(orders[i]), subscriber);
+    }
+    this.registry.subscriptions(TestEvent2.class).get(2).dispose();
+    fresh.subscriptions(TestEvent2.class).get(2).dispose();
+
+    assertEquals(
+      fresh.subscriptions(TestEvent2.class).stream().map(EventSubscription::subscriber).toList(),
+      this.registry.subscriptions(TestEvent2.class).stream().map(EventSubscription::subscriber).toList()
+    );
+  }
+
   @Test
   void testUnsubscribeAll() {
     assertFalse(this.registry.subscribed(TestEvent1.class));
@@ -136,4 +275,556 @@ class EventTest {
     this.bus.post(event);
     assertEquals(3, event.touches); // only 3, since one subscriber is gone
   }
+
+  @Test
+  void testUnsubscribeAllOwner() {
+    final UUID owner1 = UUID.randomUUID();
+    final UUID owner2 = UUID.randomUUID();
+
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(owner1, TestEvent1.class, event -> event.touches++);
+    this.registry.subscribe(owner2, TestEvent1.class, event -> event.touches++);
+    this.registry.subscribe(owner2, TestEvent2.class, event -> event.touches++);
+    assertEquals(owner1, subscription.owner());
+
+    final TestEvent2 event = new TestEvent2();
+    this.bus.post(event);
+    assertEquals(3, event.touches);
+
+    this.registry.unsubscribeAll(owner2);
+    assertTrue(this.registry.subscribed(TestEvent1.class));
+    assertEquals(1, this.registry.subscriptions(TestEvent2.class).size());
+
+    this.bus.post(event);
+    assertEquals(4, event.touches); // only owner1 remains
+
+    subscription.dispose();
+    this.registry.unsubscribeAll(owner1); // already gone - no-op
+    assertFalse(this.registry.subscribed(TestEvent1.class));
+  }
+
+  @Test
+  void testUnsubscribeAllListener() {
+    final TestListener listener = new TestListener();
+    this.registry.subscribe(listener, MethodHandles.lookup());
+    assertTrue(this.registry.subscribed(TestEvent1.class));
+    this.registry.unsubscribeAll(listener);
+    assertFalse(this.registry.subscribed(TestEvent1.class));
+  }
+
+  @Test
+  void testAcceptsOverride() {
+    final List<OptionalInt> orders = new ArrayList<>();
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE) {
+      @Override
+      protected boolean accepts(final EventSubscription<? super Object> subscription, final Object event, final OptionalInt order) {
+        orders.add(order);
+        return super.accepts(subscription, event, order) && subscription.config().order() != 1;
+      }
+    };
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1), event -> event.touches += 10);
+
+    final TestEvent1 event = new TestEvent1();
+    bus.post(event);
+    bus.post(event, OptionalInt.of(0));
+    bus.postAll(List.of(event));
+    assertEquals(3, event.touches);
+    assertEquals(List.of(OptionalInt.empty(), OptionalInt.empty(), OptionalInt.of(0), OptionalInt.empty(), OptionalInt.empty()), orders);
+  }
+
+  @Test
+  void testBakedLookupsDoNotLock() throws Exception {
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    // only lookups of baked event types are lock-free
+    assertEquals(List.of(subscription), this.registry.subscriptions(TestEvent2.class));
+    assertTrue(this.registry.subscribed(TestEvent1.class));
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // the predicate is tested while holding the lock of the registry
+      final Future<?> mutation = executor.submit(() -> this.registry.unsubscribeIf(candidate -> {
+        locked.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return false;
+      }));
+      assertTrue(locked.await(10, TimeUnit.SECONDS));
+      final TestEvent2 event = new TestEvent2();
+      executor.submit(() -> {
+        this.bus.post(event);
+        assertEquals(List.of(subscription), this.registry.subscriptions(TestEvent2.class));
+        assertTrue(this.registry.subscribed(TestEvent1.class));
+      }).get(10, TimeUnit.SECONDS);
+      assertEquals(1, event.touches);
+      release.countDown();
+      mutation.get(10, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testBakedSubscriptionsAreSnapshots() {
+    final EventSubscription<TestEvent1> first = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<EventSubscription<? super Object>> baked = this.registry.subscriptions(TestEvent2.class);
+    assertThrows(UnsupportedOperationException.class, baked::clear);
+
+    final EventSubscription<TestEvent2> second = this.registry.subscribe(TestEvent2.class, event -> event.touches++);
+    assertEquals(List.of(first), baked);
+    assertEquals(List.of(second, first), this.registry.subscriptions(TestEvent2.class));
+    first.dispose();
+    assertEquals(List.of(first), baked);
+    assertEquals(List.of(second), this.registry.subscriptions(TestEvent2.class));
+  }
+
+  @Test
+  void testConcurrentChurn() throws Exception {
+    final EventSubscription<TestEvent1> stable = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final Class<? extends TestEvent1> type = thread % 2 == 0 ? TestEvent1.class : TestEvent2.class;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 2_000; i++) {
+            this.registry.subscribe(type, e -> { }).dispose();
+            final TestEvent2 event = new TestEvent2();
+            this.bus.post(event);
+            // the stable subscription is in every plan published while others come and go
+            assertEquals(1, event.touches);
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(List.of(stable), this.registry.subscriptions(TestEvent2.class));
+  }
+
+  @Test
+  void testTransaction() {
+    final EventSubscription<TestEvent1> existing = this.registry.subscribe(TestEvent1.class, event -> event.touches += 100);
+    assertEquals(1, this.registry.subscriptions(TestEvent2.class).size()); // baked before the transaction
+
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribe(TestEvent1.class, event -> event.touches++);
+    transaction.subscribe(TestEvent2.class, event -> event.touches++);
+    final EventSubscription<TestEvent2> discarded = transaction.subscribe(TestEvent2.class, event -> event.touches += 10);
+    transaction.unsubscribe(discarded);
+    transaction.unsubscribe(existing);
+
+    final TestEvent2 event = new TestEvent2();
+    this.bus.post(event);
+    assertEquals(100, event.touches); // nothing is visible until committed
+
+    transaction.commit();
+    this.bus.post(event);
+    assertEquals(102, event.touches);
+    assertEquals(2, this.registry.subscriptions(TestEvent2.class).size());
+    assertThrows(IllegalStateException.class, transaction::commit);
+  }
+
+  @Test
+  void testDisposeBeforeCommit() {
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribe(TestEvent1.class, event -> event.touches++).dispose();
+    transaction.commit();
+    assertFalse(this.registry.subscribed(TestEvent1.class));
+
+    final TestEvent1 event = new TestEvent1();
+    this.bus.post(event);
+    assertEquals(0, event.touches);
+  }
+
+  @Test
+  void testPool() {
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+    final EventPool<TestEvent1> pool = new EventPool<>(TestEvent1.class, TestEvent1::new, event -> event.touches = 0, true);
+    bus.pool(pool);
+    this.registry.subscribe(TestEvent1.class, event -> {
+      assertFalse(event.cancelled());
+      event.touches++;
+      event.cancelled(true);
+    });
+
+    final TestEvent1 event = pool.acquire();
+    bus.post(event);
+    assertEquals(0, event.touches); // reset once released
+    assertThrows(IllegalStateException.class, () -> bus.post(event));
+    assertThrows(IllegalStateException.class, () -> pool.release(event));
+
+    final TestEvent1 recycled = pool.acquire();
+    assertSame(event, recycled);
+    assertFalse(recycled.cancelled());
+    bus.postAll(List.of(recycled));
+    assertThrows(IllegalStateException.class, () -> bus.post(recycled));
+  }
+
+  @Test
+  void testPoolReleasesBatchesOnce() {
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+    final EventPool<TestEvent1> pool = new EventPool<>(TestEvent1.class, TestEvent1::new);
+    bus.pool(pool);
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+
+    final TestEvent1 event = pool.acquire();
+    bus.postAll(List.of(event, event));
+    assertSame(event, pool.acquire());
+    assertNotSame(event, pool.acquire());
+
+    final SimpleEventBus<Object> debugging = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+    debugging.pool(new EventPool<>(TestEvent1.class, TestEvent1::new, e -> { }, true));
+    debugging.postAll(List.of(event, event));
+  }
+
+  @Test
+  void testPoster() {
+    final Poster<TestEvent1> poster = this.bus.poster(TestEvent1.class);
+    final TestEvent1 event = new TestEvent1();
+    poster.post(event);
+    assertEquals(0, event.touches);
+
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, e -> e.touches++);
+    poster.post(event);
+    assertEquals(1, event.touches);
+
+    subscription.dispose();
+    poster.post(event);
+    assertEquals(1, event.touches);
+    assertThrows(IllegalArgumentException.class, () -> poster.post(new TestEvent2()));
+  }
+
+  @Test
+  void testPostSupplierKeepsNoBus() {
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<WeakReference<EventBus<Object>>> buses = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      final EventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+      bus.post(TestEvent1.class, TestEvent1::new);
+      buses.add(new WeakReference<>(bus));
+    }
+    TestReachability.assertCollectable(buses);
+  }
+
+  @Test
+  void testSubscriberReferencingBusKeepsNoRegistry() {
+    final List<WeakReference<EventRegistry<Object>>> registries = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      registries.add(bakeReferencingBus());
+    }
+    TestReachability.assertCollectable(registries);
+  }
+
+  // in a method of its own, so that nothing on the stack references the registry once it returns
+  private static WeakReference<EventRegistry<Object>> bakeReferencingBus() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    final EventBus<Object> bus = new SimpleEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE);
+    registry.subscribe(TestEvent2.class, event -> bus.post(new TestEvent1()));
+    bus.post(new TestEvent2());
+    return new WeakReference<>(registry);
+  }
+
+  @Test
+  void testBakingKeepsNoClassLoader() throws ReflectiveOperationException {
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<WeakReference<ClassLoader>> loaders = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      loaders.add(this.postIsolated());
+    }
+    TestReachability.assertCollectable(loaders);
+  }
+
+  // in a method of its own, so that nothing on the stack references the event once it returns
+  private WeakReference<ClassLoader> postIsolated() throws ReflectiveOperationException {
+    final Class<?> type = TestReachability.isolate(TestEvent2.class);
+    final TestEvent1 event = (TestEvent1) type.getConstructor().newInstance();
+    this.bus.post(event);
+    assertEquals(1, event.touches);
+    assertEquals(1, this.registry.subscriptions(type.asSubclass(TestEvent1.class)).size());
+    return new WeakReference<>(type.getClassLoader());
+  }
+
+  @Test
+  void testManyKeys() {
+    final int keys = 20_000;
+    final int[] unkeyed = new int[1];
+    final int[] touches = new int[keys];
+    this.registry.key(Message.class, Message::channel);
+    this.registry.subscribe(Message.class, EventConfig.defaults().order(1), event -> unkeyed[0]++);
+    this.bus.post(new Message("bake"));
+    final List<EventSubscription<Message>> subscriptions = new ArrayList<>(keys);
+    for (int i = 0; i < keys; i++) {
+      final int key = i;
+      subscriptions.add(this.registry.subscribeKeyed(Message.class, String.valueOf(i), EventConfig.defaults().order(i % 3), event -> touches[key]++));
+    }
+    for (int i = 0; i < keys; i += 2) {
+      subscriptions.get(i).dispose();
+    }
+    assertEquals(keys / 2 + 1, this.registry.subscriptions(Message.class).size());
+    for (int i = 0; i < keys; i++) {
+      this.bus.post(new Message(String.valueOf(i)));
+    }
+    for (int i = 0; i < keys; i++) {
+      assertEquals(i % 2, touches[i]);
+    }
+    assertEquals(keys + 1, unkeyed[0]);
+  }
+
+  @Test
+  void testPostSupplier() {
+    final List<TestEvent1> built = new ArrayList<>();
+    final Supplier<TestEvent1> supplier = () -> {
+      final TestEvent1 event = new TestEvent1();
+      built.add(event);
+      return event;
+    };
+    this.bus.post(TestEvent1.class, supplier);
+    assertEquals(0, built.size());
+
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    this.bus.post(TestEvent1.class, supplier);
+    assertEquals(1, built.size());
+    assertEquals(1, built.get(0).touches);
+    assertThrows(IllegalArgumentException.class, () -> this.bus.post(TestEvent1.class, TestEvent2::new));
+
+    subscription.dispose();
+    this.bus.post(TestEvent1.class, supplier);
+    assertEquals(1, built.size());
+  }
+
+  @Test
+  void testQuarantine() {
+    final EventBus.EventExceptionHandler ignore = new EventBus.EventExceptionHandler() {
+      @Override
+      public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+      }
+    };
+    final boolean[] failing = {true};
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> {
+      event.touches++;
+      if (failing[0]) {
+        throw new IllegalStateException();
+      }
+    });
+
+    final List<EventQuarantine.State> states = new ArrayList<>();
+    final EventQuarantine quarantine = new EventQuarantine(0.5, Duration.ofHours(1), 2, Duration.ZERO, (quarantined, state) -> states.add(state));
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, ignore);
+    bus.quarantine(quarantine);
+    assertThrows(IllegalStateException.class, () -> bus.quarantine(quarantine));
+    final TestEvent1 event = new TestEvent1();
+    bus.post(event);
+    bus.post(event);
+    assertEquals(EventQuarantine.State.QUARANTINED, quarantine.state(subscription));
+    bus.post(event); // probation, still failing
+    failing[0] = false;
+    bus.post(event); // probation, recovered
+    assertEquals(EventQuarantine.State.HEALTHY, quarantine.state(subscription));
+    assertEquals(List.of(EventQuarantine.State.QUARANTINED, EventQuarantine.State.PROBATION, EventQuarantine.State.QUARANTINED, EventQuarantine.State.PROBATION, EventQuarantine.State.HEALTHY), states);
+    assertEquals(4, event.touches);
+
+    failing[0] = true;
+    final SimpleEventBus<Object> cooling = new SimpleEventBus<>(this.registry, ignore);
+    cooling.quarantine(new EventQuarantine(1, Duration.ofHours(1), 1, Duration.ofHours(1)));
+    for (int i = 0; i < 3; i++) {
+      cooling.post(event);
+    }
+    assertEquals(5, event.touches);
+  }
+
+  @Test
+  void testQuarantineWithRethrowingHandler() {
+    final EventBus.EventExceptionHandler rethrow = new EventBus.EventExceptionHandler() {
+      @Override
+      public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+        throw new IllegalArgumentException(throwable);
+      }
+    };
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> {
+      event.touches++;
+      throw new IllegalStateException();
+    });
+
+    final EventMetrics metrics = new EventMetrics();
+    final EventQuarantine quarantine = new EventQuarantine(0.5, Duration.ofHours(1), 2, Duration.ZERO);
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, rethrow, metrics);
+    bus.quarantine(quarantine);
+    final TestEvent1 event = new TestEvent1();
+    assertThrows(IllegalArgumentException.class, () -> bus.post(event));
+    assertThrows(IllegalArgumentException.class, () -> bus.post(event));
+    assertEquals(EventQuarantine.State.QUARANTINED, quarantine.state(subscription));
+    assertThrows(IllegalArgumentException.class, () -> bus.post(event)); // probation, still failing
+    assertEquals(EventQuarantine.State.QUARANTINED, quarantine.state(subscription));
+    assertThrows(IllegalArgumentException.class, () -> bus.post(event)); // probation again, rather than stuck
+    assertEquals(4, event.touches);
+    assertEquals(4, metrics.snapshot().subscriptions().get(subscription).failures());
+  }
+
+  @Test
+  void testMetricsKeepNoDisposedSubscription() {
+    final EventMetrics metrics = new EventMetrics();
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE, metrics);
+    final List<WeakReference<EventSubscription<?>>> subscriptions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      subscriptions.add(this.invokeAndDispose(bus));
+    }
+    TestReachability.assertCollectable(subscriptions);
+    assertTrue(metrics.snapshot().subscriptions().isEmpty());
+    assertEquals(5, metrics.snapshot().events().get(TestEvent1.class).posts());
+  }
+
+  @Test
+  void testQuarantineKeepsNoDisposedSubscription() {
+    final EventQuarantine quarantine = new EventQuarantine(0.5, Duration.ofHours(1), 2, Duration.ZERO);
+    final SimpleEventBus<Object> bus = new SimpleEventBus<>(this.registry, TestFailingEventExceptionHandler.INSTANCE);
+    bus.quarantine(quarantine);
+    final List<WeakReference<EventSubscription<?>>> subscriptions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      subscriptions.add(this.invokeAndDispose(bus));
+    }
+    TestReachability.assertCollectable(subscriptions);
+  }
+
+  // in a method of its own, so that nothing on the stack references the subscription once it returns
+  private WeakReference<EventSubscription<?>> invokeAndDispose(final EventBus<Object> bus) {
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final TestEvent1 event = new TestEvent1();
+    bus.post(event);
+    assertEquals(1, event.touches);
+    subscription.dispose();
+    return new WeakReference<>(subscription);
+  }
+
+  @Test
+  void testFlightRecording() throws IOException {
+    this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    final List<RecordedEvent> recorded;
+    try (final Recording recording = new Recording()) {
+      recording.enable("com.seiama.event.Post").withThreshold(Duration.ZERO);
+      recording.enable("com.seiama.event.Dispatch").withThreshold(Duration.ZERO);
+      recording.start();
+      this.bus.post(new TestEvent1());
+      this.bus.postAll(List.of(new TestEvent1(), new TestEvent1(), new TestEvent2()));
+      recording.stop();
+      final Path file = Files.createTempFile("event", ".jfr");
+      try {
+        recording.dump(file);
+        recorded = RecordingFile.readAllEvents(file);
+      } finally {
+        Files.delete(file);
+      }
+    }
+
+    final List<String> posts = new ArrayList<>();
+    int dispatches = 0;
+    for (final RecordedEvent event : recorded) {
+      switch (event.getEventType().getName()) {
+        case "com.seiama.event.Post" -> posts.add(event.getClass("eventType").getName() + " x" + event.getInt("events") + " -> " + event.getInt("subscribers"));
+        case "com.seiama.event.Dispatch" -> dispatches++;
+        default -> {
+        }
+      }
+    }
+    assertEquals(List.of(TestEvent1.class.getName() + " x1 -> 1", TestEvent1.class.getName() + " x2 -> 2", TestEvent2.class.getName() + " x1 -> 1"), posts);
+    assertEquals(4, dispatches);
+  }
+
+  @Test
+  void testKeyed() {
+    final List<String> calls = new ArrayList<>();
+    assertThrows(IllegalArgumentException.class, () -> this.registry.subscribeKeyed(Message.class, "a", EventConfig.defaults(), event -> calls.add("never")));
+    this.registry.subscribe(Message.class, EventConfig.defaults().order(1), event -> calls.add("unkeyed " + event.channel()));
+    this.registry.key(Message.class, Message::channel);
+    final EventSubscription<Message> a = this.registry.subscribeKeyed(Message.class, "a", EventConfig.defaults().order(0), event -> calls.add("a"));
+    this.registry.subscribeKeyed(Message.class, "b", EventConfig.defaults().order(2), event -> calls.add("b"));
+    assertEquals(3, this.registry.subscriptions(Message.class).size());
+
+    this.bus.post(new Message("a"));
+    this.bus.post(new Message("b"));
+    this.bus.post(new Message("c"));
+    assertEquals(List.of("a", "unkeyed a", "unkeyed b", "b", "unkeyed c"), calls);
+
+    calls.clear();
+    a.dispose();
+    this.bus.postAll(List.of(new Message("a"), new Message("b")));
+    assertEquals(List.of("unkeyed a", "unkeyed b", "b"), calls);
+  }
+
+  @Test
+  void testKeyedTransaction() {
+    final List<String> calls = new ArrayList<>();
+    final EventRegistry.Transaction<Object> unkeyed = this.registry.transaction();
+    assertThrows(IllegalArgumentException.class, () -> unkeyed.subscribeKeyed(Message.class, "a", EventConfig.defaults(), event -> calls.add("never")));
+    this.registry.key(Message.class, Message::channel);
+    this.bus.post(new Message("a"));
+
+    final EventRegistry.Transaction<Object> transaction = this.registry.transaction();
+    transaction.subscribeKeyed(Message.class, "a", EventConfig.defaults(), event -> calls.add("a"));
+    transaction.subscribe(Message.class, EventConfig.defaults().order(1), event -> calls.add("unkeyed " + event.channel()));
+    this.bus.post(new Message("a"));
+    assertEquals(List.of(), calls);
+
+    transaction.commit();
+    this.bus.post(new Message("a"));
+    this.bus.post(new Message("b"));
+    assertEquals(List.of("a", "unkeyed a", "unkeyed b"), calls);
+  }
+
+  @Test
+  void testFreeze() {
+    final EventSubscription<TestEvent1> subscription = this.registry.subscribe(TestEvent1.class, event -> event.touches++);
+    this.registry.key(Message.class, Message::channel);
+    final List<String> calls = new ArrayList<>();
+    this.registry.subscribeKeyed(Message.class, "a", EventConfig.defaults(), event -> calls.add(event.channel()));
+
+    final FrozenEventRegistry<Object> frozen = this.registry.freeze();
+    assertSame(frozen, frozen.freeze());
+    assertThrows(UnsupportedOperationException.class, () -> frozen.subscribe(TestEvent1.class, event -> { }));
+    assertThrows(UnsupportedOperationException.class, () -> frozen.unsubscribeAll(this));
+    assertThrows(UnsupportedOperationException.class, frozen::transaction);
+
+    final long version = frozen.version();
+    subscription.dispose();
+    this.registry.subscribe(TestEvent2.class, event -> event.touches += 10);
+    assertEquals(version, frozen.version());
+
+    final EventBus<Object> bus = new SimpleEventBus<>(frozen, TestFailingEventExceptionHandler.INSTANCE);
+    final TestEvent2 event = new TestEvent2();
+    bus.post(event);
+    assertEquals(1, event.touches);
+    bus.post(new Message("a"));
+    bus.post(new Message("b"));
+    assertEquals(List.of("a"), calls);
+  }
+
+  @Test
+  void testSubscriberReferencingBusKeepsNoFrozenRegistry() {
+    final List<WeakReference<EventRegistry<Object>>> registries = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      registries.add(bakeFrozenReferencingBus());
+    }
+    TestReachability.assertCollectable(registries);
+  }
+
+  // in a method of its own, so that nothing on the stack references the registry once it returns
+  private static WeakReference<EventRegistry<Object>> bakeFrozenReferencingBus() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    final AtomicReference<EventBus<Object>> bus = new AtomicReference<>();
+    registry.subscribe(TestEvent2.class, event -> bus.get().post(new TestEvent1()));
+    final FrozenEventRegistry<Object> frozen = registry.freeze();
+    bus.set(new SimpleEventBus<>(frozen, TestFailingEventExceptionHandler.INSTANCE));
+    bus.get().post(new TestEvent2());
+    return new WeakReference<>(frozen);
+  }
+
+  record Message(String channel) {
+  }
 }
@@ -0,0 +1,113 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.ParallelEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelEventBusTest {
+  private final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+  private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+  private final EventBus.EventExceptionHandler exceptions = new EventBus.EventExceptionHandler() {
+    @Override
+    public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+      ParallelEventBusTest.this.failures.add(throwable);
+    }
+  };
+
+  @Test
+  void testGroupRunsInParallel() {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final ParallelEventBus<Object> bus = new ParallelEventBus<>(this.registry, this.exceptions, pool);
+      final CountDownLatch latch = new CountDownLatch(4);
+      final List<String> calls = new CopyOnWriteArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        // every subscriber waits for the others, which only completes if they are called concurrently
+        this.registry.subscribe(TestEvent1.class, event -> {
+          latch.countDown();
+          assertTrue(latch.await(10, TimeUnit.SECONDS));
+          event.cancelled(true);
+        });
+      }
+      this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1), event -> calls.add("accepts"));
+      this.registry.subscribe(TestEvent1.class, EventConfig.defaults().order(1).acceptsCancelled(false), event -> calls.add("skipped"));
+
+      bus.post(new TestEvent1());
+      assertEquals(List.of(), this.failures);
+      assertEquals(List.of("accepts"), calls);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testEveryFailureReachesExceptionHandler() {
+    final ParallelEventBus<Object> bus = new ParallelEventBus<>(this.registry, this.exceptions);
+    for (int i = 0; i < 3; i++) {
+      this.registry.subscribe(TestEvent1.class, event -> {
+        throw new IllegalStateException();
+      });
+    }
+    this.registry.subscribe(TestEvent1.class, EventConfig.defaults().acceptsCancelled(false), event -> event.touches++);
+
+    final TestEvent1 event = new TestEvent1();
+    bus.post(event);
+    assertEquals(3, this.failures.size());
+    assertEquals(1, event.touches);
+  }
+
+  @Test
+  void testPostAllRunsGroupsOnPool() {
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final ParallelEventBus<Object> bus = new ParallelEventBus<>(this.registry, this.exceptions, pool);
+      final List<Thread> threads = new CopyOnWriteArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        this.registry.subscribe(TestEvent1.class, event -> threads.add(Thread.currentThread()));
+      }
+
+      bus.postAll(List.of(new TestEvent1(), new TestEvent1(), new TestEvent1()));
+      assertEquals(List.of(), this.failures);
+      assertEquals(6, threads.size());
+      for (final Thread thread : threads) {
+        assertTrue(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool, thread.getName());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
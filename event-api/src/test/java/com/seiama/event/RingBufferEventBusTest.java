@@ -0,0 +1,133 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import com.seiama.event.bus.RingBufferEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferEventBusTest {
+  private static final int EVENTS = 10_000;
+
+  @Test
+  void testSingleProducer() {
+    for (final RingBufferEventBus.WaitStrategy waitStrategy : RingBufferEventBus.WaitStrategy.values()) {
+      final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+      final List<Integer> received = new ArrayList<>(); // only touched by the consumer, and read after close
+      registry.subscribe(Integer.class, received::add);
+      final RingBufferEventBus<Object> bus = new RingBufferEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE, 8, RingBufferEventBus.ProducerType.SINGLE, waitStrategy, Executors.defaultThreadFactory());
+      for (int i = 0; i < EVENTS; i++) {
+        bus.post(i);
+      }
+      bus.close();
+      assertEquals(EVENTS, received.size(), waitStrategy.name());
+      for (int i = 0; i < EVENTS; i++) {
+        assertEquals(i, (int) received.get(i));
+      }
+      assertThrows(IllegalStateException.class, () -> bus.post(0));
+    }
+  }
+
+  @Test
+  void testPostAllDispatchesOnConsumer() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    final List<Integer> received = new ArrayList<>();
+    final List<Thread> threads = new ArrayList<>();
+    registry.subscribe(Integer.class, event -> {
+      received.add(event);
+      threads.add(Thread.currentThread());
+    });
+    final RingBufferEventBus<Object> bus = new RingBufferEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE, 8);
+    final List<Object> events = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      events.add(i);
+    }
+    bus.postAll(events);
+    bus.close();
+    assertEquals(events, received);
+    assertFalse(threads.contains(Thread.currentThread()));
+    assertEquals(1, threads.stream().distinct().count());
+    assertThrows(IllegalStateException.class, () -> bus.postAll(List.of(0)));
+  }
+
+  @Test
+  void testMultiProducerKeepsPerProducerOrder() throws InterruptedException {
+    final int producers = 4;
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    final int[] last = new int[producers];
+    final int[] count = {0};
+    registry.subscribe(Integer.class, event -> {
+      final int producer = event % producers;
+      if (event < last[producer]) {
+        throw new AssertionError("out of order: " + event);
+      }
+      last[producer] = event;
+      count[0]++;
+    });
+    final RingBufferEventBus<Object> bus = new RingBufferEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE, 16);
+    final List<Thread> threads = new ArrayList<>();
+    for (int producer = 0; producer < producers; producer++) {
+      final int offset = producer;
+      final Thread thread = new Thread(() -> {
+        for (int i = 0; i < EVENTS; i++) {
+          bus.post(i * producers + offset);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    bus.close();
+    assertEquals(producers * EVENTS, count[0]);
+  }
+
+  @Test
+  void testBlockingWakesIdleConsumer() throws InterruptedException {
+    for (final RingBufferEventBus.ProducerType producerType : RingBufferEventBus.ProducerType.values()) {
+      final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+      final Semaphore received = new Semaphore(0);
+      registry.subscribe(Integer.class, event -> received.release());
+      final RingBufferEventBus<Object> bus = new RingBufferEventBus<>(registry, TestFailingEventExceptionHandler.INSTANCE, 8, producerType, RingBufferEventBus.WaitStrategy.BLOCKING, Executors.defaultThreadFactory());
+      // every post races the consumer going idle, and a lost wakeup leaves the event undelivered until close
+      for (int i = 0; i < 1_000; i++) {
+        bus.post(i);
+        assertTrue(received.tryAcquire(5, TimeUnit.SECONDS), producerType.name());
+      }
+      bus.close();
+    }
+  }
+}
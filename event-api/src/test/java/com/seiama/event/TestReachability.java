@@ -0,0 +1,83 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public final class TestReachability {
+  private TestReachability() {
+  }
+
+  public static void assertCollectable(final List<? extends WeakReference<?>> references) {
+    for (int attempt = 0; attempt < 50; attempt++) {
+      if (references.stream().allMatch(reference -> reference.get() == null)) {
+        return;
+      }
+      System.gc();
+      // allocate a little, so that collectors that skip an explicit request still run
+      final List<byte[]> garbage = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        garbage.add(new byte[1024]);
+      }
+      garbage.clear();
+      try {
+        Thread.sleep(10);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    final long reachable = references.stream().filter(reference -> reference.get() != null).count();
+    fail(reachable + " of " + references.size() + " objects are still reachable");
+  }
+
+  // loads a copy of a class in a class loader of its own, which loads every other class from the original loader
+  public static Class<?> isolate(final Class<?> type) {
+    final byte[] bytes;
+    try (final InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+      bytes = requireNonNull(in, type.getName()).readAllBytes();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new IsolatedClassLoader(type.getClassLoader()).define(type.getName(), bytes);
+  }
+
+  private static final class IsolatedClassLoader extends ClassLoader {
+    IsolatedClassLoader(final ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(final String name, final byte[] bytes) {
+      return this.defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+plugins {
+  java
+  id("me.champeau.jmh")
+}
+
+java {
+  toolchain {
+    languageVersion.set(JavaLanguageVersion.of(17))
+  }
+}
+
+repositories {
+  mavenCentral()
+}
+
+dependencies {
+  jmhImplementation(project(":event-api"))
+}
+
+jmh {
+  jmhVersion.set("1.37")
+  // allow selecting benchmarks with -PjmhIncludes=PostBenchmark
+  providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
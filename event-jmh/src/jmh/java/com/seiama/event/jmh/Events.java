@@ -0,0 +1,76 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.jmh;
+
+import com.seiama.event.AbstractCancellable;
+import com.seiama.event.EventSubscription;
+import com.seiama.event.bus.EventBus;
+
+final class Events {
+  private Events() {
+  }
+
+  static final EventBus.EventExceptionHandler FAILING = new EventBus.EventExceptionHandler() {
+    @Override
+    public <E> void eventExceptionCaught(final EventBus<? super E> bus, final EventSubscription<? super E> subscription, final E event, final Throwable throwable) {
+      throw new AssertionError(subscription + " failed", throwable);
+    }
+  };
+
+  interface BenchmarkEvent {
+    void touch();
+  }
+
+  static final class PlainEvent implements BenchmarkEvent {
+    int touches;
+
+    @Override
+    public void touch() {
+      this.touches++;
+    }
+  }
+
+  static final class KeyedEvent implements BenchmarkEvent {
+    final int key;
+    int touches;
+
+    KeyedEvent(final int key) {
+      this.key = key;
+    }
+
+    @Override
+    public void touch() {
+      this.touches++;
+    }
+  }
+
+  static final class CancellableEvent extends AbstractCancellable implements BenchmarkEvent {
+    int touches;
+
+    @Override
+    public void touch() {
+      this.touches++;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.jmh;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares posting to {@link EventRegistry#subscribe(Class, Object, EventConfig, com.seiama.event.EventSubscriber) keyed}
+ * subscribers against subscribers that filter events by key themselves.
+ *
+ * <p>Every subscriber is interested in a different key, so a post reaches exactly one of them.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class KeyedBenchmark {
+  @Param({"10", "1000"})
+  public int subscribers;
+  @Param({"false", "true"})
+  public boolean keyed;
+
+  private EventBus<Object> bus;
+  private Events.KeyedEvent[] events;
+  private int next;
+
+  @Setup
+  public void setup() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    registry.key(Events.KeyedEvent.class, event -> event.key);
+    this.events = new Events.KeyedEvent[this.subscribers];
+    for (int i = 0; i < this.subscribers; i++) {
+      final int key = i;
+      if (this.keyed) {
+        registry.subscribeKeyed(Events.KeyedEvent.class, key, EventConfig.defaults(), Events.KeyedEvent::touch);
+      } else {
+        registry.subscribe(Events.KeyedEvent.class, event -> {
+          if (event.key == key) {
+            event.touch();
+          }
+        });
+      }
+      this.events[i] = new Events.KeyedEvent(key);
+    }
+    this.bus = new SimpleEventBus<>(registry, Events.FAILING);
+  }
+
+  @Benchmark
+  public Object post() {
+    final Events.KeyedEvent event = this.events[this.next];
+    this.next = (this.next + 1) % this.events.length;
+    this.bus.post(event);
+    return event;
+  }
+}
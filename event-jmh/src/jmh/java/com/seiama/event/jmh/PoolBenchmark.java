@@ -0,0 +1,84 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.jmh;
+
+import com.seiama.event.bus.EventPool;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares posting a newly allocated event with posting one acquired from an {@link EventPool}.
+ *
+ * <p>Run with {@code -prof gc} to see the allocation rate of each.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class PoolBenchmark {
+  private SimpleEventBus<Object> bus;
+  private EventPool<Events.CancellableEvent> pool;
+
+  @Setup
+  public void setup() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    // allocated events are of another type, so that the pool does not recycle them
+    registry.subscribe(Events.PlainEvent.class, Events.BenchmarkEvent::touch);
+    registry.subscribe(Events.CancellableEvent.class, Events.BenchmarkEvent::touch);
+    this.bus = new SimpleEventBus<>(registry, Events.FAILING);
+    this.pool = new EventPool<>(Events.CancellableEvent.class, Events.CancellableEvent::new);
+    this.bus.pool(this.pool);
+  }
+
+  @Benchmark
+  public void allocated() {
+    this.bus.post(new Events.PlainEvent());
+  }
+
+  @Benchmark
+  public void pooled() {
+    this.bus.post(this.pool.acquire());
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void pooledContended() {
+    this.bus.post(this.pool.acquire());
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.jmh;
+
+import com.seiama.event.EventConfig;
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.Poster;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SimpleEventBus#post(Object, OptionalInt)} throughput.
+ *
+ * <p>Subscribers are spread over {@link #ORDERS} orders, and half of them do not accept
+ * cancelled events, so that the order and cancellation checks are exercised. Posts go either to the
+ * registry the subscribers were added to, or to a {@link com.seiama.event.registry.FrozenEventRegistry frozen}
+ * snapshot of it.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class PostBenchmark {
+  private static final int ORDERS = 4;
+  private static final OptionalInt ORDER = OptionalInt.of(ORDERS / 2);
+
+  @Param({"0", "1", "10", "1000"})
+  public int subscribers;
+  @Param({"false", "true"})
+  public boolean cancellable;
+  @Param({"false", "true"})
+  public boolean frozen;
+
+  private EventBus<Object> bus;
+  private Class<? extends Events.BenchmarkEvent> type;
+  private Poster<? extends Events.BenchmarkEvent> poster;
+
+  @Setup
+  public void setup() {
+    final EventRegistry<Object> registry = new SimpleEventRegistry<>(Object.class);
+    final Class<? extends Events.BenchmarkEvent> type = this.cancellable ? Events.CancellableEvent.class : Events.PlainEvent.class;
+    for (int i = 0; i < this.subscribers; i++) {
+      final EventConfig config = EventConfig.defaults()
+        .order(i % ORDERS)
+        .acceptsCancelled(i % 2 == 0);
+      registry.subscribe(type, config, Events.BenchmarkEvent::touch);
+    }
+    this.bus = new SimpleEventBus<>(this.frozen ? registry.freeze() : registry, Events.FAILING);
+    this.type = type;
+    this.poster = this.bus.poster(type);
+  }
+
+  @Benchmark
+  public Object post(final PerThread state) {
+    final Events.BenchmarkEvent event = state.event(this.cancellable);
+    this.bus.post(event);
+    return event;
+  }
+
+  @Benchmark
+  public Object postOrdered(final PerThread state) {
+    final Events.BenchmarkEvent event = state.event(this.cancellable);
+    this.bus.post(event, ORDER);
+    return event;
+  }
+
+  @Benchmark
+  public Object postPoster(final PerThread state) {
+    final Events.BenchmarkEvent event = state.event(this.cancellable);
+    post(this.poster, event);
+    return event;
+  }
+
+  @Benchmark
+  public Object postSupplier(final PerThread state) {
+    final Events.BenchmarkEvent event = state.event(this.cancellable);
+    post(this.bus, this.type, event);
+    return event;
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Object postContended(final PerThread state) {
+    final Events.BenchmarkEvent event = state.event(this.cancellable);
+    this.bus.post(event);
+    return event;
+  }
+
+  @State(Scope.Thread)
+  public static class PerThread {
+    // events are reused so that allocation does not dominate, and are per-thread to avoid false sharing
+    private final Events.PlainEvent plain = new Events.PlainEvent();
+    private final Events.CancellableEvent cancellable = new Events.CancellableEvent();
+
+    Events.BenchmarkEvent event(final boolean cancellable) {
+      return cancellable ? this.cancellable : this.plain;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Events.BenchmarkEvent> void post(final Poster<T> poster, final Events.BenchmarkEvent event) {
+    poster.post((T) event);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Events.BenchmarkEvent> void post(final EventBus<Object> bus, final Class<T> type, final Events.BenchmarkEvent event) {
+    bus.post(type, () -> (T) event);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.seiama.event.jmh;
+
+import com.seiama.event.bus.EventBus;
+import com.seiama.event.bus.SimpleEventBus;
+import com.seiama.event.registry.ConcurrentEventRegistry;
+import com.seiama.event.registry.EventRegistry;
+import com.seiama.event.registry.SimpleEventRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of subscription churn against a registry that already holds subscriptions.
+ *
+ * <p>{@link #churnThenPost()} also posts to an unrelated event type afterwards, which shows how
+ * much of the registry's baked state a mutation throws away. {@link #churnContended()} churns from
+ * several threads at once, which is where the registry implementations differ most.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class SubscribeBenchmark {
+  @Param({"0", "10", "1000"})
+  public int existing;
+  @Param({"simple", "concurrent"})
+  public String implementation;
+
+  private EventRegistry<Object> registry;
+  private EventBus<Object> bus;
+  private final Events.PlainEvent plain = new Events.PlainEvent();
+
+  @Setup
+  public void setup() {
+    this.registry = this.implementation.equals("concurrent") ? new ConcurrentEventRegistry<>(Object.class) : new SimpleEventRegistry<>(Object.class);
+    for (int i = 0; i < this.existing; i++) {
+      this.registry.subscribe(Events.PlainEvent.class, Events.BenchmarkEvent::touch);
+      this.registry.subscribe(Events.CancellableEvent.class, Events.BenchmarkEvent::touch);
+    }
+    this.bus = new SimpleEventBus<>(this.registry, Events.FAILING);
+  }
+
+  @Benchmark
+  public void churn() {
+    this.registry.subscribe(Events.CancellableEvent.class, Events.BenchmarkEvent::touch).dispose();
+  }
+
+  @Benchmark
+  public Object churnThenPost() {
+    this.registry.subscribe(Events.CancellableEvent.class, Events.BenchmarkEvent::touch).dispose();
+    this.bus.post(this.plain);
+    return this.plain;
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Object churnContended() {
+    this.registry.subscribe(Events.CancellableEvent.class, Events.BenchmarkEvent::touch).dispose();
+    this.bus.post(this.plain);
+    return this.plain;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of event, licensed under the MIT License.
+ *
+ * Copyright (c) 2021-2023 Seiama
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.seiama.event.registry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how resolving an event type's hierarchy scales with class depth and interface count.
+ *
+ * <p>{@link #walk()} measures the uncached walk over the hierarchy, which is done once per event type, and
+ * {@link #lookup()} the lookup of an event type that has already been baked, which is what posting pays. This
+ * benchmark lives in the registry package, as the walk is not part of the public API.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class HierarchyBenchmark {
+  @Param
+  public Shape shape;
+
+  private Class<?> type;
+  private EventRegistry<Object> registry;
+
+  @Setup
+  public void setup() {
+    this.type = this.shape.type;
+    this.registry = new SimpleEventRegistry<>(Object.class);
+    this.registry.subscribe(Object.class, event -> { });
+    this.registry.subscriptions(this.type);
+  }
+
+  @Benchmark
+  public List<?> walk() {
+    return Internals.ancestors(this.type);
+  }
+
+  @Benchmark
+  public List<?> lookup() {
+    return this.registry.subscriptions(this.type);
+  }
+
+  public enum Shape {
+    DEPTH_1(L1.class),
+    DEPTH_4(L4.class),
+    DEPTH_16(L16.class),
+    // every interface extends the previous one, so each is reachable along many paths
+    INTERFACES_4(W4.class),
+    INTERFACES_16(W16.class);
+
+    final Class<?> type;
+
+    Shape(final Class<?> type) {
+      this.type = type;
+    }
+  }
+
+  static class L1 {
+  }
+
+  static class L2 extends L1 {
+  }
+
+  static class L3 extends L2 {
+  }
+
+  static class L4 extends L3 {
+  }
+
+  static class L5 extends L4 {
+  }
+
+  static class L6 extends L5 {
+  }
+
+  static class L7 extends L6 {
+  }
+
+  static class L8 extends L7 {
+  }
+
+  static class L9 extends L8 {
+  }
+
+  static class L10 extends L9 {
+  }
+
+  static class L11 extends L10 {
+  }
+
+  static class L12 extends L11 {
+  }
+
+  static class L13 extends L12 {
+  }
+
+  static class L14 extends L13 {
+  }
+
+  static class L15 extends L14 {
+  }
+
+  static class L16 extends L15 {
+  }
+
+  interface I1 {
+  }
+
+  interface I2 extends I1 {
+  }
+
+  interface I3 extends I2 {
+  }
+
+  interface I4 extends I3 {
+  }
+
+  interface I5 extends I4 {
+  }
+
+  interface I6 extends I5 {
+  }
+
+  interface I7 extends I6 {
+  }
+
+  interface I8 extends I7 {
+  }
+
+  interface I9 extends I8 {
+  }
+
+  interface I10 extends I9 {
+  }
+
+  interface I11 extends I10 {
+  }
+
+  interface I12 extends I11 {
+  }
+
+  interface I13 extends I12 {
+  }
+
+  interface I14 extends I13 {
+  }
+
+  interface I15 extends I14 {
+  }
+
+  interface I16 extends I15 {
+  }
+
+  static class W4 implements I1, I2, I3, I4 {
+  }
+
+  static class W16 implements I1, I2, I3, I4, I5, I6, I7, I8, I9, I10, I11, I12, I13, I14, I15, I16 {
+  }
+}
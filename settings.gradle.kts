@@ -13,7 +13,8 @@ plugins {
 rootProject.name = "event-parent"
 
 sequenceOf(
-  "event-api"
+  "event-api",
+  "event-jmh"
 ).forEach {
   include(it)
 }